@@ -0,0 +1,44 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Shapes of the arrays the microbenchmarks feed to codecs and sorting engines
+public enum ArrayDistribution {
+    UNIFORM,
+    SORTED,
+    REVERSED,
+    // Few distinct values, the worst case for naive partitioning
+    FEW_UNIQUE,
+    // Small non-negative values, which protobuf varints encode in one or two bytes
+    SMALL;
+
+    private static final int FEW_UNIQUE_VALUES = 16;
+    private static final int SMALL_VALUES_BOUND = 1 << 14;
+
+    public int[] generate(int length, long seed) {
+        Random random = new Random(seed);
+        int[] array;
+        switch (this) {
+            case FEW_UNIQUE:
+                return random.ints(length, 0, FEW_UNIQUE_VALUES).toArray();
+            case SMALL:
+                return random.ints(length, 0, SMALL_VALUES_BOUND).toArray();
+            case SORTED:
+                array = random.ints(length).toArray();
+                Arrays.sort(array);
+                return array;
+            case REVERSED:
+                array = random.ints(length).toArray();
+                Arrays.sort(array);
+                for (int i = 0, j = length - 1; i < j; ++i, --j) {
+                    int swapped = array[i];
+                    array[i] = array[j];
+                    array[j] = swapped;
+                }
+                return array;
+            default:
+                return random.ints(length).toArray();
+        }
+    }
+}
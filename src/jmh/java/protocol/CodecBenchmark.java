@@ -0,0 +1,59 @@
+package protocol;
+
+import bench.ArrayDistribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+// Encode and decode of a whole request body, without any framing or sockets
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"primitive", "protobuf"})
+    public String protocolName;
+
+    @Param({"16", "1024", "65536"})
+    public int arrayLength;
+
+    @Param({"UNIFORM", "SMALL"})
+    public ArrayDistribution distribution;
+
+    private ListTransferringProtocol protocol;
+    private int[] array;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        protocol = protocolName.equals("protobuf")
+                ? new ProtobufListTransferringProtocol()
+                : new PrimitiveListTransferringProtocol();
+        array = distribution.generate(arrayLength, 42);
+        encoded = protocol.encode(array);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        return protocol.encode(array);
+    }
+
+    @Benchmark
+    public int[] decode() throws ProtocolException {
+        return protocol.decodeArray(encoded.duplicate());
+    }
+}
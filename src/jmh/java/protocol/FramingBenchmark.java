@@ -0,0 +1,81 @@
+package protocol;
+
+import bench.ArrayDistribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+// Frame assembly by MessageAccepter when a message arrives in reads of chunkSize bytes, and frame output
+// by MessageCreator. A chunk as large as the frame takes the zero-copy path, smaller ones copy into a body buffer
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramingBenchmark {
+    @Param({"16", "1024", "65536"})
+    public int arrayLength;
+
+    @Param({"UNIFORM"})
+    public ArrayDistribution distribution;
+
+    @Param({"64", "1460", "65536", "1048576"})
+    public int chunkSize;
+
+    @Param({"true", "false"})
+    public boolean pooled;
+
+    private final ListTransferringProtocol protocol = new PrimitiveListTransferringProtocol();
+    private ByteBuffer encodedBody;
+    private ByteBuffer frame;
+    private ByteBuffer output;
+    private MessageAccepter accepter;
+
+    @Setup
+    public void setUp() {
+        encodedBody = protocol.encode(distribution.generate(arrayLength, 42));
+        MessageCreator creator = new MessageCreator(encodedBody);
+        frame = ByteBuffer.allocateDirect(creator.messageLength());
+        for (ByteBuffer buffer : creator.createdBuffers()) {
+            frame.put(buffer);
+        }
+        output = ByteBuffer.allocateDirect(frame.capacity());
+        BufferPool bufferPool = pooled ? new BufferPool(1 << 21, 16) : BufferPool.unpooled();
+        accepter = new MessageAccepter(protocol, bufferPool, MessageAccepter.DEFAULT_MAX_MESSAGE_LENGTH);
+    }
+
+    @Benchmark
+    public int assemble() throws ProtocolException {
+        frame.clear();
+        while (!accepter.isAccepted()) {
+            frame.limit(Math.min(frame.position() + chunkSize, frame.capacity()));
+            accepter.accept(frame);
+        }
+        int bodyLength = accepter.acceptedBody().orElseThrow().remaining();
+        accepter.reset();
+        return bodyLength;
+    }
+
+    @Benchmark
+    public ByteBuffer create() {
+        MessageCreator creator = new MessageCreator(encodedBody);
+        output.clear();
+        for (ByteBuffer buffer : creator.createdBuffers()) {
+            output.put(buffer);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,46 @@
+package sorting;
+
+import bench.ArrayDistribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// The quadratic reference engine, a baseline for SortingBenchmark only at the lengths it can sort in reasonable time
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReferenceSortingBenchmark {
+    @Param({"16", "1024"})
+    public int arrayLength;
+
+    @Param({"UNIFORM", "SORTED", "REVERSED", "FEW_UNIQUE"})
+    public ArrayDistribution distribution;
+
+    private final SortingEngine engine = new ReferenceSortingEngine();
+    private int[] source;
+
+    @Setup
+    public void setUp() {
+        source = distribution.generate(arrayLength, 42);
+    }
+
+    @Benchmark
+    public int[] sort() {
+        int[] array = source.clone();
+        engine.sort(array);
+        return array;
+    }
+}
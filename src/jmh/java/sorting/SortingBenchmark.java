@@ -0,0 +1,76 @@
+package sorting;
+
+import bench.ArrayDistribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// The sorting engines behind ArraySortingServer.sortArray. Every call sorts a fresh copy of the same array,
+// subtract the copy benchmark to get the sort alone. The quadratic reference engine is in ReferenceSortingBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortingBenchmark {
+    @Param({"quick", "radix", "parallel"})
+    public String engineName;
+
+    @Param({"16", "1024", "65536", "1048576"})
+    public int arrayLength;
+
+    @Param({"UNIFORM", "SORTED", "REVERSED", "FEW_UNIQUE"})
+    public ArrayDistribution distribution;
+
+    private SortingEngine engine;
+    private int[] source;
+
+    @Setup
+    public void setUp() {
+        switch (engineName) {
+            case "quick":
+                engine = new DualPivotQuickSortingEngine();
+                break;
+            case "radix":
+                engine = new RadixSortingEngine();
+                break;
+            case "parallel":
+                engine = new ParallelSortingEngine(
+                        new DualPivotQuickSortingEngine(),
+                        ParallelSortingEngine.DEFAULT_PARALLEL_THRESHOLD);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown sorting engine " + engineName);
+        }
+        source = distribution.generate(arrayLength, 42);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public int[] copy() {
+        return source.clone();
+    }
+
+    @Benchmark
+    public int[] sort() {
+        int[] array = source.clone();
+        engine.sort(array);
+        return array;
+    }
+}
@@ -0,0 +1,202 @@
+package bench;
+
+import client.ClientService;
+import client.RequestSchedule;
+import client.ResponseVerification;
+import protocol.ListTransferringProtocol;
+import protocol.PrimitiveListTransferringProtocol;
+import protocol.ProtobufListTransferringProtocol;
+import server.ArraySortingServer;
+import server.AsynchronousArraySortingServer;
+import server.BlockingArraySortingServer;
+import server.NonBlockingArraySortingServer;
+import server.ServerSettings;
+import server.VirtualThreadArraySortingServer;
+import sorting.DualPivotQuickSortingEngine;
+import sorting.ParallelSortingEngine;
+import sorting.RadixSortingEngine;
+import sorting.ReferenceSortingEngine;
+import sorting.SortingEngine;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Non-interactive ServerBenchmark: runs a round for every point of a SweepConfig and writes one row per round,
+// holding all of its parameters and metrics. For example
+//     java -jar server-comparasion.jar nightly.properties architectures=blocking,nonblocking repetitions=3
+public class BenchmarkSweep {
+    private static final Set<String> ARCHITECTURES = Set.of("blocking", "nonblocking", "virtual", "async");
+    private static final Set<String> PROTOCOLS = Set.of("primitive", "protobuf");
+
+    public static void main(String[] args) throws IOException {
+        SweepConfig config = SweepConfig.fromArgs(args);
+        List<SweepConfig.Point> points = config.points();
+        // A typo should fail the sweep before its first round, not hours into it
+        for (SweepConfig.Point point : points) {
+            if (!ARCHITECTURES.contains(point.architecture) || !PROTOCOLS.contains(point.protocol)) {
+                throw new IllegalArgumentException(String.format("Unknown architecture '%s' or protocol '%s'",
+                        point.architecture, point.protocol));
+            }
+            makeSchedule(config, point);
+        }
+        makeSortingEngine(config.get(SweepConfig.SORTING, "reference")).close();
+        config.getMeasurementPlan();
+        ResultWriter.Format format =
+                ResultWriter.Format.valueOf(config.get(SweepConfig.FORMAT, "csv").toUpperCase(Locale.ROOT));
+        String output = config.getPath(SweepConfig.OUTPUT,
+                format == ResultWriter.Format.JSON ? "benchmark-sweep.jsonl" : "benchmark-sweep.csv");
+        System.out.printf("Sweeping %d rounds into %s\n", points.size(), output);
+        try (ResultWriter writer = new ResultWriter(output, format)) {
+            int round = 0;
+            for (SweepConfig.Point point : points) {
+                round += 1;
+                System.out.printf("Round #%d of %d: %s, %s, %d task threads, array length %d, %d clients, "
+                                + "delta %d ms, rate %d requests/s, repetition %d\n",
+                        round, points.size(), point.architecture, point.protocol, point.taskThreads,
+                        point.arrayLength, point.clients, point.delta, point.rate, point.repetition);
+                System.out.flush();
+                writer.write(runRound(config, round, point));
+            }
+        }
+        System.out.println("Sweep finished");
+    }
+
+    public static Map<String, Object> runRound(SweepConfig config, int round, SweepConfig.Point point) {
+        Map<String, Object> row = describe(config, round, point);
+        if (config.getBoolean(SweepConfig.SEPARATE_JVMS, false)) {
+            row.putAll(Orchestrator.runRound(config, point));
+            return row;
+        }
+        ServerBenchmark benchmark = new ServerBenchmark(
+                makeServer(config, point),
+                () -> makeClientService(config, point),
+                config.getMeasurementPlan(),
+                config.getBoolean(SweepConfig.JFR, false));
+        benchmark.run();
+        row.putAll(benchmark.getMetrics());
+        return row;
+    }
+
+    static ArraySortingServer makeServer(SweepConfig config, SweepConfig.Point point) {
+        ServerSettings settings = ServerSettings.DEFAULT
+                .withTaskExecutorThreads(point.taskThreads)
+                .withResultCache(1024L * config.getInt(SweepConfig.RESULT_CACHE_KIB, 0))
+                .withStageTracing(config.getBoolean(SweepConfig.STAGE_TRACING, false));
+        return makeServer(
+                point.architecture,
+                makeProtocol(point.protocol),
+                makeSortingEngine(config.get(SweepConfig.SORTING, "reference")),
+                config.getInt(SweepConfig.PORT, 8000),
+                settings);
+    }
+
+    static ClientService makeClientService(SweepConfig config, SweepConfig.Point point) {
+        return new ClientService(
+                point.clients,
+                point.arrayLength,
+                makeSchedule(config, point),
+                config.getInt(SweepConfig.QUERIES, 100),
+                config.getInt(SweepConfig.WINDOW, 0),
+                getVerification(config),
+                makeProtocol(point.protocol),
+                config.getInt(SweepConfig.PORT, 8000),
+                getClientEngine(config),
+                config.getInt(SweepConfig.CLIENT_SELECTOR_THREADS, 1),
+                false);
+    }
+
+    private static Map<String, Object> describe(SweepConfig config, int round, SweepConfig.Point point) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("round", round);
+        row.put("architecture", point.architecture);
+        row.put("protocol", point.protocol);
+        row.put("sorting", config.get(SweepConfig.SORTING, "reference"));
+        row.put("task_threads", point.taskThreads);
+        row.put("array_length", point.arrayLength);
+        row.put("clients", point.clients);
+        row.put("load", config.get(SweepConfig.LOAD, "closed"));
+        row.put("delta_ms", point.delta);
+        row.put("rate_rps", point.rate);
+        row.put("repetition", point.repetition);
+        row.put("queries", config.getInt(SweepConfig.QUERIES, 100));
+        row.put("window", config.getInt(SweepConfig.WINDOW, 0));
+        row.put("client_engine", getClientEngine(config).name().toLowerCase(Locale.ROOT));
+        row.put("verification", getVerification(config).name().toLowerCase(Locale.ROOT));
+        return row;
+    }
+
+    private static ClientService.Engine getClientEngine(SweepConfig config) {
+        return config.get(SweepConfig.CLIENT_ENGINE, "threads").equals("selector")
+                ? ClientService.Engine.SELECTOR
+                : ClientService.Engine.THREAD_PER_CLIENT;
+    }
+
+    private static ResponseVerification getVerification(SweepConfig config) {
+        return ResponseVerification.valueOf(config.get(SweepConfig.VERIFICATION, "decode").toUpperCase(Locale.ROOT));
+    }
+
+    private static RequestSchedule makeSchedule(SweepConfig config, SweepConfig.Point point) {
+        switch (config.get(SweepConfig.LOAD, "closed")) {
+            case "closed":
+                return RequestSchedule.closedLoop(point.delta);
+            case "constant":
+                return RequestSchedule.openLoop(RequestSchedule.Mode.CONSTANT_RATE, point.rate);
+            case "poisson":
+                return RequestSchedule.openLoop(RequestSchedule.Mode.POISSON, point.rate);
+            default:
+                throw new IllegalArgumentException("Load must be closed, constant or poisson");
+        }
+    }
+
+    private static ListTransferringProtocol makeProtocol(String name) {
+        switch (name) {
+            case "primitive":
+                return new PrimitiveListTransferringProtocol();
+            case "protobuf":
+                return new ProtobufListTransferringProtocol();
+            default:
+                throw new IllegalArgumentException("Protocol must be primitive or protobuf, got " + name);
+        }
+    }
+
+    private static SortingEngine makeSortingEngine(String name) {
+        switch (name) {
+            case "reference":
+                return new ReferenceSortingEngine();
+            case "quick":
+                return new DualPivotQuickSortingEngine();
+            case "radix":
+                return new RadixSortingEngine();
+            case "parallel":
+                return new ParallelSortingEngine(
+                        new DualPivotQuickSortingEngine(),
+                        ParallelSortingEngine.DEFAULT_PARALLEL_THRESHOLD);
+            default:
+                throw new IllegalArgumentException("Sorting must be reference, quick, radix or parallel, got " + name);
+        }
+    }
+
+    private static ArraySortingServer makeServer(String architecture,
+                                                 ListTransferringProtocol protocol,
+                                                 SortingEngine sortingEngine,
+                                                 int port,
+                                                 ServerSettings settings) {
+        switch (architecture) {
+            case "blocking":
+                return new BlockingArraySortingServer(protocol, sortingEngine, port, settings, false);
+            case "nonblocking":
+                return new NonBlockingArraySortingServer(protocol, sortingEngine, port, settings, false);
+            case "virtual":
+                return new VirtualThreadArraySortingServer(protocol, sortingEngine, port, settings, false);
+            case "async":
+                return new AsynchronousArraySortingServer(protocol, sortingEngine, port, settings, false);
+            default:
+                throw new IllegalArgumentException(
+                        "Architecture must be blocking, nonblocking, virtual or async, got " + architecture);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Line-based commands between the orchestrator and its child JVMs over their stdin and stdout:
+//     COMMAND key=value key=value
+// Values are URL-encoded. Lines that do not start with an expected command are forwarded to stderr,
+// so stray output of a child never breaks the channel
+public class ControlChannel {
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final String peerName;
+
+    public ControlChannel(InputStream in, OutputStream out, String peerName) {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.out = new PrintStream(out, true, StandardCharsets.UTF_8);
+        this.peerName = peerName;
+    }
+
+    public static ControlChannel of(Process process, String peerName) {
+        return new ControlChannel(process.getInputStream(), process.getOutputStream(), peerName);
+    }
+
+    // The channel of a child JVM to its parent. Everything else the child prints goes to stderr
+    public static ControlChannel toParent() {
+        ControlChannel channel = new ControlChannel(System.in, System.out, "orchestrator");
+        System.setOut(System.err);
+        return channel;
+    }
+
+    public void send(String command, Map<String, ?> params) {
+        out.println(params.entrySet().stream()
+                .map(param -> param.getKey() + "="
+                        + URLEncoder.encode(String.valueOf(param.getValue()), StandardCharsets.UTF_8))
+                .collect(Collectors.joining(" ", command + (params.isEmpty() ? "" : " "), "")));
+    }
+
+    public void send(String command) {
+        send(command, Map.of());
+    }
+
+    // Waits for the next line that starts with one of the commands, returning its command and parameters
+    public Message receive(String... commands) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String command = line.split(" ", 2)[0];
+            for (String expected : commands) {
+                if (command.equals(expected)) {
+                    return new Message(command, parse(line));
+                }
+            }
+            System.err.printf("[%s] %s\n", peerName, line);
+        }
+        throw new IOException(String.format("%s closed the control channel", peerName));
+    }
+
+    public Map<String, String> expect(String command) throws IOException {
+        Message message = receive(command, "ERROR");
+        if (message.command.equals("ERROR")) {
+            throw new IOException(String.format("%s failed: %s", peerName, message.params.get("message")));
+        }
+        return message.params;
+    }
+
+    // Numbers and booleans come back as such, everything else stays a string
+    public static Object parseValue(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ignored) {
+        }
+        if (value.equals("true") || value.equals("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ignored) {
+        }
+        return value;
+    }
+
+    private static Map<String, String> parse(String line) {
+        Map<String, String> params = new LinkedHashMap<>();
+        String[] parts = line.split(" ");
+        for (int i = 1; i < parts.length; ++i) {
+            int separator = parts[i].indexOf('=');
+            if (separator > 0) {
+                params.put(parts[i].substring(0, separator),
+                        URLDecoder.decode(parts[i].substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    public static class Message {
+        public final String command;
+        public final Map<String, String> params;
+
+        private Message(String command, Map<String, String> params) {
+            this.command = command;
+            this.params = params;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package bench;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// A JDK Flight Recorder recording of one round, summarized in process once it stops: allocation rate,
+// GC pauses, safepoints, threads and the code that allocates the most
+public class FlightRecording {
+    private static final int TOP_ALLOCATION_SITES = 5;
+
+    private final Recording recording = new Recording();
+    private long startNanos;
+
+    public FlightRecording() {
+        recording.setName("server-benchmark-round");
+        recording.enable("jdk.ObjectAllocationSample").withStackTrace();
+        recording.enable("jdk.GarbageCollection");
+        // A begin event lasts until every thread is stopped, the end event closes the VM operation that follows
+        recording.enable("jdk.SafepointBegin").withThreshold(Duration.ZERO);
+        recording.enable("jdk.SafepointEnd").withThreshold(Duration.ZERO);
+        // Sampled when the recording starts and when it stops
+        recording.enable("jdk.JavaThreadStatistics").with("period", "everyChunk");
+        recording.enable("jdk.ThreadAllocationStatistics").with("period", "everyChunk");
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+        recording.start();
+    }
+
+    public Map<String, Object> stop() {
+        long recordedNanos = System.nanoTime() - startNanos;
+        recording.stop();
+        Path file = null;
+        try {
+            file = Files.createTempFile("server-benchmark-round", ".jfr");
+            recording.dump(file);
+            return summarize(RecordingFile.readAllEvents(file), recordedNanos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            recording.close();
+            if (file != null) {
+                file.toFile().delete();
+            }
+        }
+    }
+
+    private static Map<String, Object> summarize(List<RecordedEvent> events, long recordedNanos) {
+        events.sort(Comparator.comparing(RecordedEvent::getStartTime));
+        // The first allocation sample of a thread also weighs everything it allocated before the recording,
+        // so it is dropped for the threads that already ran when the recording started
+        Set<Long> runningThreads = new HashSet<>();
+        boolean isStarted = false;
+        long allocatedBytes = 0;
+        Map<String, Long> allocationSites = new HashMap<>();
+        long gcCount = 0;
+        Duration gcPauseTotal = Duration.ZERO;
+        Duration gcPauseMax = Duration.ZERO;
+        Map<Long, RecordedEvent> safepointBegins = new HashMap<>();
+        Map<Long, RecordedEvent> safepointEnds = new HashMap<>();
+        RecordedEvent firstThreads = null;
+        RecordedEvent lastThreads = null;
+        for (RecordedEvent event : events) {
+            switch (event.getEventType().getName()) {
+                case "jdk.ThreadAllocationStatistics":
+                    if (!isStarted) {
+                        runningThreads.add(event.getThread("thread").getJavaThreadId());
+                    }
+                    break;
+                case "jdk.ObjectAllocationSample":
+                    isStarted = true;
+                    if (runningThreads.remove(event.getThread("eventThread").getJavaThreadId())) {
+                        break;
+                    }
+                    // The weight is the memory allocated since the thread's previous sample
+                    long weight = event.getLong("weight");
+                    allocatedBytes += weight;
+                    allocationSites.merge(allocationSite(event), weight, Long::sum);
+                    break;
+                case "jdk.GarbageCollection":
+                    ++gcCount;
+                    gcPauseTotal = gcPauseTotal.plus(event.getDuration("sumOfPauses"));
+                    Duration longestPause = event.getDuration("longestPause");
+                    if (longestPause.compareTo(gcPauseMax) > 0) {
+                        gcPauseMax = longestPause;
+                    }
+                    break;
+                case "jdk.SafepointBegin":
+                    safepointBegins.put(event.getLong("safepointId"), event);
+                    break;
+                case "jdk.SafepointEnd":
+                    safepointEnds.put(event.getLong("safepointId"), event);
+                    break;
+                case "jdk.JavaThreadStatistics":
+                    if (firstThreads == null || event.getStartTime().isBefore(firstThreads.getStartTime())) {
+                        firstThreads = event;
+                    }
+                    if (lastThreads == null || !event.getStartTime().isBefore(lastThreads.getStartTime())) {
+                        lastThreads = event;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // Safepoints cut by the start or the end of the recording have only one of their events and are left out
+        long safepoints = 0;
+        Duration safepointTotal = Duration.ZERO;
+        Duration timeToSafepoint = Duration.ZERO;
+        for (RecordedEvent begin : safepointBegins.values()) {
+            RecordedEvent end = safepointEnds.get(begin.getLong("safepointId"));
+            if (end != null) {
+                ++safepoints;
+                safepointTotal = safepointTotal.plus(Duration.between(begin.getStartTime(), end.getEndTime()));
+                timeToSafepoint = timeToSafepoint.plus(begin.getDuration());
+            }
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        double recordedSeconds = recordedNanos / 1e9;
+        summary.put("jfr_allocated_mb", allocatedBytes / 1e6);
+        summary.put("jfr_allocation_mb_per_s", recordedSeconds == 0 ? 0 : allocatedBytes / 1e6 / recordedSeconds);
+        summary.put("jfr_gc_count", gcCount);
+        summary.put("jfr_gc_pause_total_ms", gcPauseTotal.toNanos() / 1e6);
+        summary.put("jfr_gc_pause_max_ms", gcPauseMax.toNanos() / 1e6);
+        summary.put("jfr_safepoints", safepoints);
+        summary.put("jfr_safepoint_total_ms", safepointTotal.toNanos() / 1e6);
+        summary.put("jfr_time_to_safepoint_ms", timeToSafepoint.toNanos() / 1e6);
+        summary.put("jfr_threads_active", lastThreads == null ? 0 : lastThreads.getLong("activeCount"));
+        summary.put("jfr_threads_peak", lastThreads == null ? 0 : lastThreads.getLong("peakCount"));
+        summary.put("jfr_threads_started", lastThreads == null
+                ? 0
+                : lastThreads.getLong("accumulatedCount") - firstThreads.getLong("accumulatedCount"));
+        summary.put("jfr_top_allocation_sites", allocationSites.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(TOP_ALLOCATION_SITES)
+                .map(site -> String.format("%s %.1f MB", site.getKey(), site.getValue() / 1e6))
+                .collect(Collectors.joining("; ")));
+        return summary;
+    }
+
+    // The allocated type and the first frame outside the JDK, so ByteBuffer.allocate is charged to its caller
+    private static String allocationSite(RecordedEvent event) {
+        // Hidden classes of lambdas are named after the class that defines them
+        String type = event.getClass("objectClass").getName().replaceAll("\\$\\$Lambda.*", "\\$\\$Lambda");
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return type;
+        }
+        RecordedFrame site = stackTrace.getFrames().get(0);
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.isJavaFrame() && !isJdkClass(frame.getMethod().getType().getName())) {
+                site = frame;
+                break;
+            }
+        }
+        return String.format("%s.%s:%d(%s)",
+                site.getMethod().getType().getName(),
+                site.getMethod().getName(),
+                site.getLineNumber(),
+                type);
+    }
+
+    private static boolean isJdkClass(String className) {
+        return className.startsWith("java.")
+                || className.startsWith("javax.")
+                || className.startsWith("jdk.")
+                || className.startsWith("sun.")
+                || className.startsWith("com.sun.");
+    }
+}
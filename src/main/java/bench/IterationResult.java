@@ -0,0 +1,60 @@
+package bench;
+
+import client.ClientService;
+import stats.LatencyHistogram;
+
+import java.util.List;
+
+// What the clients measured in one iteration of a round, possibly merged from several load generators
+public class IterationResult {
+    private final LatencyHistogram latencies;
+    private final double throughput;
+    private final long rejectedRequests;
+    private final long failedRequests;
+
+    public IterationResult(LatencyHistogram latencies, double throughput, long rejectedRequests, long failedRequests) {
+        this.latencies = latencies;
+        this.throughput = throughput;
+        this.rejectedRequests = rejectedRequests;
+        this.failedRequests = failedRequests;
+    }
+
+    public static IterationResult of(ClientService clientService) {
+        return new IterationResult(
+                clientService.getLatencyHistogram(),
+                clientService.getThroughput(),
+                clientService.getRejectedRequests(),
+                clientService.getFailedRequests());
+    }
+
+    // Load generators run side by side, so their throughputs add up
+    public static IterationResult merge(List<IterationResult> results) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        double throughput = 0;
+        long rejectedRequests = 0;
+        long failedRequests = 0;
+        for (IterationResult result : results) {
+            latencies.add(result.latencies);
+            throughput += result.throughput;
+            rejectedRequests += result.rejectedRequests;
+            failedRequests += result.failedRequests;
+        }
+        return new IterationResult(latencies, throughput, rejectedRequests, failedRequests);
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latencies;
+    }
+
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests;
+    }
+
+    public long getFailedRequests() {
+        return failedRequests;
+    }
+}
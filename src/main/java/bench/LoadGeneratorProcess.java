@@ -0,0 +1,36 @@
+package bench;
+
+import client.ClientService;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Child JVM of the Orchestrator that runs a share of a round's clients. Commands on stdin:
+//     RUN <sweep properties of one point>  runs one iteration, answered with RESULT <what the clients measured>
+//     EXIT
+public class LoadGeneratorProcess {
+    public static void main(String[] args) throws IOException {
+        ControlChannel parent = ControlChannel.toParent();
+        try {
+            ControlChannel.Message message;
+            while ((message = parent.receive("RUN", "EXIT")).command.equals("RUN")) {
+                SweepConfig config = SweepConfig.of(message.params);
+                ClientService clientService = BenchmarkSweep.makeClientService(config, config.points().get(0));
+                clientService.run();
+
+                Map<String, Object> result = new LinkedHashMap<>();
+                byte[] latencies = clientService.getLatencyHistogram().toBytes();
+                result.put("latencies", Base64.getEncoder().encodeToString(latencies));
+                result.put("throughput_rps", clientService.getThroughput());
+                result.put("rejected", clientService.getRejectedRequests());
+                result.put("errors", clientService.getFailedRequests());
+                parent.send("RESULT", result);
+            }
+        } catch (RuntimeException e) {
+            parent.send("ERROR", Map.of("message", String.valueOf(e)));
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+// How a round warms its server up and how many times it measures. Warm-up iterations run the same load against
+// the same server without recording it. After the minimum, warm-up goes on until the mean latencies of the last
+// steadyStateWindow iterations vary by at most maxCoefficientOfVariation, or until maxWarmupIterations
+public class MeasurementPlan {
+    public static final MeasurementPlan SINGLE_RUN = new MeasurementPlan(0, 0, 3, 0, 1);
+
+    private final int minWarmupIterations;
+    private final int maxWarmupIterations;
+    private final int steadyStateWindow;
+    private final double maxCoefficientOfVariation;
+    private final int measuredIterations;
+
+    public MeasurementPlan(int minWarmupIterations,
+                           int maxWarmupIterations,
+                           int steadyStateWindow,
+                           double maxCoefficientOfVariation,
+                           int measuredIterations) {
+        if (minWarmupIterations < 0 || maxWarmupIterations < minWarmupIterations) {
+            throw new IllegalArgumentException("Warm-up iterations must satisfy 0 <= min <= max");
+        }
+        if (steadyStateWindow < 2) {
+            throw new IllegalArgumentException("Steady state needs a window of at least two iterations");
+        }
+        if (measuredIterations < 1) {
+            throw new IllegalArgumentException("At least one iteration must be measured");
+        }
+        this.minWarmupIterations = minWarmupIterations;
+        this.maxWarmupIterations = maxWarmupIterations;
+        this.steadyStateWindow = steadyStateWindow;
+        this.maxCoefficientOfVariation = maxCoefficientOfVariation;
+        this.measuredIterations = measuredIterations;
+    }
+
+    public int getMinWarmupIterations() {
+        return minWarmupIterations;
+    }
+
+    public int getMaxWarmupIterations() {
+        return maxWarmupIterations;
+    }
+
+    public int getSteadyStateWindow() {
+        return steadyStateWindow;
+    }
+
+    public double getMaxCoefficientOfVariation() {
+        return maxCoefficientOfVariation;
+    }
+
+    public int getMeasuredIterations() {
+        return measuredIterations;
+    }
+
+    public boolean hasWarmup() {
+        return maxWarmupIterations > 0;
+    }
+}
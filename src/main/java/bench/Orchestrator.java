@@ -0,0 +1,129 @@
+package bench;
+
+import stats.LatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Runs a round with the server and the load generators in JVMs of their own on this machine, so client threads,
+// their GC and JIT do not compete with the measured server. Any child may be pinned to CPUs with taskset.
+// The orchestrator drives warm-up and measured iterations over the children's control channels
+public class Orchestrator {
+    private static final long EXIT_TIMEOUT_SECONDS = 30;
+
+    public static Map<String, Object> runRound(SweepConfig config, SweepConfig.Point point) {
+        List<Process> processes = new ArrayList<>();
+        try {
+            Process serverProcess = launch(ServerProcess.class, config.getPath(SweepConfig.SERVER_CPUS, ""), config);
+            processes.add(serverProcess);
+            ControlChannel server = ControlChannel.of(serverProcess, "server");
+            server.send("START", config.pinnedTo(point, point.clients));
+            server.expect("READY");
+
+            // Clients are split as evenly as possible, a generator never runs zero of them
+            int generatorsTotal = Math.max(1, Math.min(config.getInt(SweepConfig.LOAD_GENERATORS, 1), point.clients));
+            List<ControlChannel> generators = new ArrayList<>();
+            List<Map<String, String>> generatorConfigs = new ArrayList<>();
+            for (int i = 0; i < generatorsTotal; ++i) {
+                Process generatorProcess = launch(
+                        LoadGeneratorProcess.class,
+                        config.getPath(SweepConfig.LOAD_GENERATOR_CPUS, ""),
+                        config);
+                processes.add(generatorProcess);
+                generators.add(ControlChannel.of(generatorProcess, "load generator " + i));
+                int clients = point.clients / generatorsTotal + (i < point.clients % generatorsTotal ? 1 : 0);
+                generatorConfigs.add(config.pinnedTo(point, clients));
+            }
+
+            RoundResult result = RoundResult.measure(
+                    config.getMeasurementPlan(),
+                    () -> runIteration(generators, generatorConfigs),
+                    () -> {
+                        server.send("RESET");
+                        expect(server, "READY");
+                    });
+            for (ControlChannel generator : generators) {
+                generator.send("EXIT");
+            }
+            server.send("STOP");
+            Map<String, String> serverMetrics = server.expect("RESULT");
+
+            Map<String, Object> metrics = new LinkedHashMap<>(result.getMetrics());
+            serverMetrics.forEach((name, value) -> metrics.put(name, ControlChannel.parseValue(value)));
+            metrics.put("load_generators", generatorsTotal);
+            awaitExit(processes);
+            return metrics;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (Process process : processes) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    // Every generator runs its share at the same time, their results make up one iteration
+    private static IterationResult runIteration(List<ControlChannel> generators,
+                                                List<Map<String, String>> generatorConfigs) {
+        for (int i = 0; i < generators.size(); ++i) {
+            generators.get(i).send("RUN", generatorConfigs.get(i));
+        }
+        List<IterationResult> results = new ArrayList<>();
+        for (ControlChannel generator : generators) {
+            Map<String, String> result = expect(generator, "RESULT");
+            results.add(new IterationResult(
+                    LatencyHistogram.fromBytes(Base64.getDecoder().decode(result.get("latencies"))),
+                    Double.parseDouble(result.get("throughput_rps")),
+                    Long.parseLong(result.get("rejected")),
+                    Long.parseLong(result.get("errors"))));
+        }
+        return IterationResult.merge(results);
+    }
+
+    private static Map<String, String> expect(ControlChannel channel, String command) {
+        try {
+            return channel.expect(command);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Process launch(Class<?> mainClass, String cpus, SweepConfig config) throws IOException {
+        List<String> command = new ArrayList<>();
+        if (!cpus.isEmpty()) {
+            command.add("taskset");
+            command.add("-c");
+            command.add(cpus);
+        }
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        for (String option : config.getPath(SweepConfig.JVM_OPTIONS, "").split("\\s+")) {
+            if (!option.isEmpty()) {
+                command.add(option);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass.getName());
+        return new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static void awaitExit(List<Process> processes) throws IOException {
+        try {
+            for (Process process : processes) {
+                if (!process.waitFor(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IOException("Benchmark child JVM won't exit: " + process.info().commandLine().orElse(""));
+                }
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+}
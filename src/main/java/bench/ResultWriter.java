@@ -0,0 +1,96 @@
+package bench;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Writes one row per round, as CSV with a header taken from the first row or as one JSON object per line
+public class ResultWriter implements Closeable {
+    private final PrintWriter os;
+    private final Format format;
+    private List<String> columns = null;
+
+    public ResultWriter(String path, Format format) throws FileNotFoundException {
+        this.os = new PrintWriter(path);
+        this.format = format;
+    }
+
+    public void write(Map<String, Object> row) {
+        if (format == Format.JSON) {
+            os.println(row.entrySet().stream()
+                    .map(column -> String.format("\"%s\":%s", escapeJson(column.getKey()), jsonValue(column.getValue())))
+                    .collect(Collectors.joining(",", "{", "}")));
+        } else {
+            if (columns == null) {
+                columns = new ArrayList<>(row.keySet());
+                os.println(String.join(",", columns));
+            }
+            if (!columns.equals(new ArrayList<>(row.keySet()))) {
+                throw new IllegalArgumentException("Every CSV row must have the same columns as the first one");
+            }
+            os.println(row.values().stream().map(ResultWriter::csvValue).collect(Collectors.joining(",")));
+        }
+        os.flush();
+    }
+
+    @Override
+    public void close() {
+        os.close();
+    }
+
+    private static String csvValue(Object value) {
+        // Undefined values, like the confidence interval of a single iteration, are left empty as JSON nulls are
+        if (value instanceof Number && !Double.isFinite(((Number) value).doubleValue())) {
+            return "";
+        }
+        String text = plainValue(value);
+        if (value instanceof String && (text.contains(",") || text.contains("\""))) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    private static String jsonValue(Object value) {
+        if (value instanceof Number && Double.isFinite(((Number) value).doubleValue())) {
+            return plainValue(value);
+        }
+        if (value instanceof Boolean) {
+            return value.toString();
+        }
+        if (value instanceof Number) {
+            return "null";
+        }
+        return '"' + escapeJson(plainValue(value)) + '"';
+    }
+
+    private static String plainValue(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return String.format(Locale.ROOT, "%f", ((Number) value).doubleValue());
+        }
+        return String.valueOf(value);
+    }
+
+    private static String escapeJson(String text) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    public enum Format {
+        CSV,
+        JSON
+    }
+}
@@ -0,0 +1,133 @@
+package bench;
+
+import stats.LatencyHistogram;
+import stats.SampleSummary;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+// Client side of a round run by a MeasurementPlan: how the warm-up went and the measured iterations
+public class RoundResult {
+    private final List<IterationResult> measuredIterations = new ArrayList<>();
+    private int warmupIterations = 0;
+    private boolean isSteady = false;
+    private double warmupCoefficientOfVariation = Double.NaN;
+
+    // Runs warm-up iterations until the last window of them is steady and drops their results, then calls
+    // afterWarmup and runs the measured iterations
+    public static RoundResult measure(MeasurementPlan plan, Supplier<IterationResult> iteration, Runnable afterWarmup) {
+        RoundResult result = new RoundResult();
+        List<Double> meanLatencies = new ArrayList<>();
+        int window = plan.getSteadyStateWindow();
+        while (meanLatencies.size() < plan.getMaxWarmupIterations()) {
+            meanLatencies.add(iteration.get().getLatencyHistogram().getMean());
+            if (meanLatencies.size() >= Math.max(plan.getMinWarmupIterations(), window)) {
+                double[] lastWindow = meanLatencies.subList(meanLatencies.size() - window, meanLatencies.size())
+                        .stream()
+                        .mapToDouble(Double::doubleValue)
+                        .toArray();
+                result.warmupCoefficientOfVariation = new SampleSummary(lastWindow).getCoefficientOfVariation();
+                if (result.warmupCoefficientOfVariation <= plan.getMaxCoefficientOfVariation()) {
+                    result.isSteady = true;
+                    break;
+                }
+            }
+        }
+        result.warmupIterations = meanLatencies.size();
+        afterWarmup.run();
+        for (int i = 0; i < plan.getMeasuredIterations(); ++i) {
+            result.measuredIterations.add(iteration.get());
+        }
+        return result;
+    }
+
+    public double getAverageClientWaitingTime() {
+        return getLatencyHistogram().getMean() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (IterationResult iteration : measuredIterations) {
+            histogram.add(iteration.getLatencyHistogram());
+        }
+        return histogram;
+    }
+
+    public double getThroughput() {
+        return getThroughputSummary().getMean();
+    }
+
+    public long getFailedRequests() {
+        return measuredIterations.stream().mapToLong(IterationResult::getFailedRequests).sum();
+    }
+
+    public long getRejectedRequests() {
+        return measuredIterations.stream().mapToLong(IterationResult::getRejectedRequests).sum();
+    }
+
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public boolean isSteady() {
+        return isSteady;
+    }
+
+    // Of the mean latencies of the last warm-up window, NaN if the window was never filled
+    public double getWarmupCoefficientOfVariation() {
+        return warmupCoefficientOfVariation;
+    }
+
+    public int getMeasuredIterations() {
+        return measuredIterations.size();
+    }
+
+    public SampleSummary getMeanLatencySummary() {
+        return summarize(iteration -> millis((long) iteration.getLatencyHistogram().getMean()));
+    }
+
+    public SampleSummary getP99LatencySummary() {
+        return summarize(iteration -> millis(iteration.getLatencyHistogram().getValueAtPercentile(99)));
+    }
+
+    public SampleSummary getThroughputSummary() {
+        return summarize(IterationResult::getThroughput);
+    }
+
+    // Every client-side value of the round, in a stable column order
+    public Map<String, Object> getMetrics() {
+        LatencyHistogram latencies = getLatencyHistogram();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("mean_ms", getAverageClientWaitingTime());
+        metrics.put("p50_ms", millis(latencies.getValueAtPercentile(50)));
+        metrics.put("p90_ms", millis(latencies.getValueAtPercentile(90)));
+        metrics.put("p99_ms", millis(latencies.getValueAtPercentile(99)));
+        metrics.put("p999_ms", millis(latencies.getValueAtPercentile(99.9)));
+        metrics.put("max_ms", millis(latencies.getMax()));
+        metrics.put("answered", latencies.getCount());
+        metrics.put("throughput_rps", getThroughput());
+        metrics.put("rejected", getRejectedRequests());
+        metrics.put("errors", getFailedRequests());
+        metrics.put("warmup_iterations", getWarmupIterations());
+        metrics.put("steady", isSteady());
+        metrics.put("warmup_cv", getWarmupCoefficientOfVariation());
+        metrics.put("iterations", getMeasuredIterations());
+        metrics.put("mean_ms_ci95", getMeanLatencySummary().getConfidenceHalfWidth());
+        metrics.put("p99_ms_ci95", getP99LatencySummary().getConfidenceHalfWidth());
+        metrics.put("throughput_rps_ci95", getThroughputSummary().getConfidenceHalfWidth());
+        return metrics;
+    }
+
+    private SampleSummary summarize(ToDoubleFunction<IterationResult> metric) {
+        return new SampleSummary(measuredIterations.stream().mapToDouble(metric).toArray());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -5,51 +5,205 @@ import bench.input.IntParameterReader;
 import bench.input.ParameterReader;
 import bench.input.RangeReader;
 import client.ClientService;
+import client.RequestSchedule;
+import client.ResponseVerification;
 import protocol.ListTransferringProtocol;
 import protocol.PrimitiveListTransferringProtocol;
 import server.ArraySortingServer;
+import server.AsynchronousArraySortingServer;
 import server.BlockingArraySortingServer;
+import server.ClientAcceptingServer;
+import server.ClientTaskExecutor;
 import server.NonBlockingArraySortingServer;
+import server.ServerSettings;
+import server.SortedResultCache;
+import server.StageLatencies;
+import server.VirtualThreadArraySortingServer;
+import server.VirtualThreads;
+import sorting.DualPivotQuickSortingEngine;
+import sorting.ParallelSortingEngine;
+import sorting.RadixSortingEngine;
+import sorting.ReferenceSortingEngine;
+import sorting.SortingEngine;
+import stats.LatencyHistogram;
 
 import static bench.input.EnumParameterReader.option;
 import static bench.VaryingParamsIterator.VaryingParameter;
 
 import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 public class ServerBenchmark implements Runnable {
     private final ArraySortingServer server;
-    private final ClientService clientService;
+    private final Supplier<ClientService> clientServices;
+    private final MeasurementPlan plan;
+    private final boolean isFlightRecorded;
+    private RoundResult result = null;
+    private Map<String, Object> flightRecordingSummary = null;
 
     public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            BenchmarkSweep.main(args);
+            return;
+        }
         ListTransferringProtocol protocol = new PrimitiveListTransferringProtocol();
         int port = 8000;
         InputStream is = System.in;
         PrintWriter os = new PrintWriter("benchmark.txt");
+        PrintWriter roundsOs = new PrintWriter("benchmark-rounds.csv");
+        roundsOs.println("round,architecture,array_length,clients,load,delta_ms,rate_rps,queries,"
+                + "mean_ms,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,throughput_rps,rejected,errors");
 
         System.out.println("Server benchmark, choose options");
-        ServerSupplierAndName blockingServer = new ServerSupplierAndName(
-                () -> new BlockingArraySortingServer(protocol, port, false),
+        ServerFactoryAndName blockingServer = new ServerFactoryAndName(
+                (sortingEngine, settings) -> new BlockingArraySortingServer(protocol, sortingEngine, port, settings, false),
                 "Blocking");
-        ServerSupplierAndName nonBlockingServer = new ServerSupplierAndName(
-                () -> new NonBlockingArraySortingServer(protocol, port, false),
+        ServerFactoryAndName nonBlockingServer = new ServerFactoryAndName(
+                (sortingEngine, settings) -> new NonBlockingArraySortingServer(protocol, sortingEngine, port, settings, false),
                 "Non Blocking");
+        ServerFactoryAndName virtualThreadServer = new ServerFactoryAndName(
+                (sortingEngine, settings) -> new VirtualThreadArraySortingServer(protocol, sortingEngine, port, settings, false),
+                // On a JDK without virtual threads the server runs platform threads, rows must not say otherwise
+                VirtualThreads.available() ? "Virtual Threads" : "Virtual Threads (platform thread fallback)");
+        ServerFactoryAndName asynchronousServer = new ServerFactoryAndName(
+                (sortingEngine, settings) -> new AsynchronousArraySortingServer(protocol, sortingEngine, port, settings, false),
+                "Asynchronous");
 
-        ParameterReader<ServerSupplierAndName> serverR = new EnumParameterReader<>(
+        ParameterReader<ServerFactoryAndName> serverR = new EnumParameterReader<>(
                 "Server architecture",
                 Map.of(
                         "b", option(blockingServer, "Blocking"),
-                        "n", option(nonBlockingServer, "Non Blocking")
+                        "n", option(nonBlockingServer, "Non Blocking"),
+                        "v", option(virtualThreadServer, VirtualThreads.available()
+                                ? "Virtual thread per connection"
+                                : "Virtual thread per connection, platform threads on this JDK"),
+                        "a", option(asynchronousServer, "Asynchronous channels with completion handlers")
+                )
+        );
+        AtomicInteger parallelSortThreshold = new AtomicInteger(ParallelSortingEngine.DEFAULT_PARALLEL_THRESHOLD);
+        Supplier<SortingEngine> parallelSortingEngine = () -> new ParallelSortingEngine(
+                new DualPivotQuickSortingEngine(),
+                parallelSortThreshold.get());
+        ParameterReader<Supplier<SortingEngine>> sortingEngineR = new EnumParameterReader<>(
+                "Sorting engine",
+                Map.of(
+                        "r", option(ReferenceSortingEngine::new, "Reference quadratic sort"),
+                        "q", option(DualPivotQuickSortingEngine::new, "Dual-pivot quicksort"),
+                        "l", option(RadixSortingEngine::new, "LSD radix sort"),
+                        "p", option(parallelSortingEngine, "Parallel fork-join dual-pivot quicksort")
+                )
+        );
+        IntParameterReader parallelSortThresholdR = new IntParameterReader("Parallel sort array length threshold", 2, true);
+        IntParameterReader channelGroupThreadsR = new IntParameterReader("Channel group threads", 1, true);
+        IntParameterReader resultCacheSizeR = new IntParameterReader("Sorted result cache size, KiB, 0 to disable", 0, true);
+        IntParameterReader selectorLoopsR = new IntParameterReader("Selector loops", 1, true);
+        ParameterReader<NonBlockingArraySortingServer.SelectorLoopAssignment> selectorLoopAssignmentR =
+                new EnumParameterReader<>(
+                        "Selector loop assignment",
+                        Map.of(
+                                "r", option(NonBlockingArraySortingServer.SelectorLoopAssignment.ROUND_ROBIN, "Round robin"),
+                                "l", option(NonBlockingArraySortingServer.SelectorLoopAssignment.LEAST_LOADED, "Least loaded")
+                        )
+                );
+
+        ParameterReader<ClientAcceptingServer.AcceptMode> acceptModeR = new EnumParameterReader<>(
+                "Accept mode",
+                Map.of(
+                        "b", option(ClientAcceptingServer.AcceptMode.BLOCKING, "Blocking accept()"),
+                        "s", option(ClientAcceptingServer.AcceptMode.SELECTOR, "OP_ACCEPT on an acceptor selector")
+                )
+        );
+
+        ParameterReader<Boolean> virtualThreadSortingR = new EnumParameterReader<>(
+                "Sort arrays on",
+                Map.of(
+                        "v", option(true, VirtualThreads.available()
+                                ? "A virtual thread per request"
+                                : "A virtual thread per request, a platform thread on this JDK"),
+                        "e", option(false, "Client task executor")
+                )
+        );
+
+        ParameterReader<ClientTaskExecutor.AdmissionPolicy> admissionPolicyR = new EnumParameterReader<>(
+                "Admission policy",
+                Map.of(
+                        "u", option(ClientTaskExecutor.AdmissionPolicy.UNBOUNDED, "Unbounded task queue"),
+                        "r", option(ClientTaskExecutor.AdmissionPolicy.REJECT, "Reject new requests when the queue is full"),
+                        "d", option(ClientTaskExecutor.AdmissionPolicy.DROP_OLDEST,
+                                "Drop the queued request the scheduling would run next"),
+                        "c", option(ClientTaskExecutor.AdmissionPolicy.PER_CLIENT, "Limit queued requests per client")
+                )
+        );
+        IntParameterReader taskQueueCapacityR = new IntParameterReader("Task queue capacity", 1, true);
+        IntParameterReader perClientTaskLimitR = new IntParameterReader("Per-client task limit", 1, true);
+
+        ParameterReader<ClientTaskExecutor.Scheduling> schedulingR = new EnumParameterReader<>(
+                "Task scheduling",
+                Map.of(
+                        "f", option(ClientTaskExecutor.Scheduling.FIFO, "First in, first out"),
+                        "r", option(ClientTaskExecutor.Scheduling.ROUND_ROBIN, "Round robin over clients"),
+                        "s", option(ClientTaskExecutor.Scheduling.SHORTEST_JOB_FIRST, "Shortest array first, with aging")
+                )
+        );
+        IntParameterReader agingR = new IntParameterReader("Aging per array element, ns", 0, true);
+
+        ParameterReader<Boolean> stageTracingR = new EnumParameterReader<>(
+                "Server stage latencies",
+                Map.of(
+                        "y", option(true, "Time read, decode, queue, sort, encode and write of every request"),
+                        "n", option(false, "Do not trace")
                 )
         );
+
+        ServerFactoryAndName server = serverR.get(is);
+        ServerSettings settings = ServerSettings.DEFAULT;
+        if (server == asynchronousServer) {
+            settings = settings.withChannelGroupThreads(channelGroupThreadsR.get(is));
+        } else {
+            settings = settings.withAccept(acceptModeR.get(is), settings.getAcceptBacklog(), settings.getAcceptBatchSize());
+        }
+        if (server == nonBlockingServer) {
+            settings = settings.withSelectorLoops(selectorLoopsR.get(is), selectorLoopAssignmentR.get(is));
+        }
+        if (server == virtualThreadServer) {
+            settings = settings.withVirtualThreadSorting(virtualThreadSortingR.get(is));
+        }
+        Supplier<SortingEngine> sortingEngine = sortingEngineR.get(is);
+        if (sortingEngine == parallelSortingEngine) {
+            parallelSortThreshold.set(parallelSortThresholdR.get(is));
+        }
+        settings = settings.withResultCache(1024L * resultCacheSizeR.get(is));
+        ClientTaskExecutor.Scheduling scheduling = schedulingR.get(is);
+        settings = settings.withScheduling(
+                scheduling,
+                scheduling == ClientTaskExecutor.Scheduling.SHORTEST_JOB_FIRST
+                        ? agingR.get(is)
+                        : settings.getAgingNanosPerElement());
+        ClientTaskExecutor.AdmissionPolicy admissionPolicy = admissionPolicyR.get(is);
+        if (admissionPolicy != ClientTaskExecutor.AdmissionPolicy.UNBOUNDED) {
+            int taskQueueCapacity = taskQueueCapacityR.get(is);
+            int perClientTaskLimit = admissionPolicy == ClientTaskExecutor.AdmissionPolicy.PER_CLIENT
+                    ? perClientTaskLimitR.get(is)
+                    : settings.getPerClientTaskLimit();
+            settings = settings.withAdmission(admissionPolicy, taskQueueCapacity, perClientTaskLimit);
+        }
+        settings = settings.withStageTracing(stageTracingR.get(is));
+        ServerSettings serverSettings = settings;
+        Supplier<ArraySortingServer> serverSupplier = () -> server.serverFactory.make(sortingEngine.get(), serverSettings);
+
         IntParameterReader arrayLengthR = new IntParameterReader("Array length", 1, true);
         IntParameterReader clientsR = new IntParameterReader("Total clients", 1, true);
         IntParameterReader deltaR = new IntParameterReader("Client queries time delta, ms", 0, true);
         IntParameterReader queriesR = new IntParameterReader("Client queries total", 1, true);
+        IntParameterReader pipelineWindowR = new IntParameterReader("Client outstanding requests window, 0 for unlimited", 0, true);
         EnumParameterReader<VaryingParameter> varyingR = new EnumParameterReader<>(
                 "Varying parameter",
                 Map.of(
@@ -62,20 +216,85 @@ public class ServerBenchmark implements Runnable {
         RangeReader arrayLengthRangeR = new RangeReader("Array length range", 1, true);
         RangeReader clientsRangeR = new RangeReader("Total clients range", 1, true);
         RangeReader deltaRangeR = new RangeReader("Time delta range, ms", 0, true);
+        ParameterReader<RequestSchedule.Mode> loadModeR = new EnumParameterReader<>(
+                "Client load",
+                Map.of(
+                        "c", option(RequestSchedule.Mode.CLOSED_LOOP, "Closed loop, next request a delta after the previous one"),
+                        "k", option(RequestSchedule.Mode.CONSTANT_RATE, "Open loop, constant request rate"),
+                        "p", option(RequestSchedule.Mode.POISSON, "Open loop, Poisson arrivals")
+                )
+        );
+        EnumParameterReader<VaryingParameter> openLoopVaryingR = new EnumParameterReader<>(
+                "Varying parameter",
+                Map.of(
+                        "n", option(VaryingParameter.AR_LENGTH, "Array length"),
+                        "m", option(VaryingParameter.TOTAL_CLIENTS, "Clients total"),
+                        "r", option(VaryingParameter.RATE, "Request rate")
+                )
+        );
+        ParameterReader<ClientService.Engine> clientEngineR = new EnumParameterReader<>(
+                "Client engine",
+                Map.of(
+                        "t", option(ClientService.Engine.THREAD_PER_CLIENT, "Threads per client"),
+                        "s", option(ClientService.Engine.SELECTOR, "Few selector threads for all clients")
+                )
+        );
+        IntParameterReader clientSelectorThreadsR = new IntParameterReader("Client selector threads", 1, true);
+        ParameterReader<ResponseVerification> verificationR = new EnumParameterReader<>(
+                "Response verification",
+                Map.of(
+                        "n", option(ResponseVerification.NONE, "None"),
+                        "c", option(ResponseVerification.CHECKSUM, "Checksum of a sample of responses"),
+                        "b", option(ResponseVerification.BYTES, "Bytes compared with the expected encoded response"),
+                        "d", option(ResponseVerification.DECODE, "Decode and compare arrays")
+                )
+        );
+        IntParameterReader rateR = new IntParameterReader("One client request rate, requests/s", 1, true);
+        RangeReader rateRangeR = new RangeReader("One client request rate range, requests/s", 1, true);
+        IntParameterReader minWarmupR = new IntParameterReader("Minimum warm-up iterations per round, 0 to disable", 0, true);
+        IntParameterReader maxWarmupR = new IntParameterReader("Maximum warm-up iterations per round", 1, true);
+        IntParameterReader steadyCvR = new IntParameterReader(
+                "Steady state: coefficient of variation of the last 3 warm-up mean latencies, %", 0, true);
+        IntParameterReader measuredIterationsR = new IntParameterReader("Measured iterations per round", 1, true);
+        ParameterReader<Boolean> flightRecordingR = new EnumParameterReader<>(
+                "Flight recording of every round",
+                Map.of(
+                        "y", option(true, "Record the measured iterations with JFR and summarize GC and allocations"),
+                        "n", option(false, "Do not record")
+                )
+        );
 
-        ServerSupplierAndName server = serverR.get(is);
         int clientQueries = queriesR.get(is);
-        VaryingParameter param = varyingR.get(is);
+        int pipelineWindow = pipelineWindowR.get(is);
+        ClientService.Engine clientEngine = clientEngineR.get(is);
+        int clientSelectorThreads = clientEngine == ClientService.Engine.SELECTOR ? clientSelectorThreadsR.get(is) : 0;
+        ResponseVerification verification = verificationR.get(is);
+        int minWarmup = minWarmupR.get(is);
+        MeasurementPlan plan = minWarmup == 0
+                ? new MeasurementPlan(0, 0, 3, 0, measuredIterationsR.get(is))
+                : new MeasurementPlan(minWarmup, Math.max(minWarmup, maxWarmupR.get(is)), 3,
+                        steadyCvR.get(is) / 100.0, measuredIterationsR.get(is));
+        boolean isFlightRecorded = flightRecordingR.get(is);
+        RequestSchedule.Mode loadMode = loadModeR.get(is);
+        boolean isOpenLoop = loadMode != RequestSchedule.Mode.CLOSED_LOOP;
+        VaryingParameter param = (isOpenLoop ? openLoopVaryingR : varyingR).get(is);
         VaryingParamsIterator allParams;
         switch (param) {
             case AR_LENGTH:
-                allParams = new VaryingParamsIterator(arrayLengthRangeR.get(is), clientsR.get(is), deltaR.get(is));
+                allParams = isOpenLoop
+                        ? new VaryingParamsIterator(arrayLengthRangeR.get(is), clientsR.get(is), 0, rateR.get(is))
+                        : new VaryingParamsIterator(arrayLengthRangeR.get(is), clientsR.get(is), deltaR.get(is), 0);
                 break;
             case TOTAL_CLIENTS:
-                allParams = new VaryingParamsIterator(arrayLengthR.get(is), clientsRangeR.get(is), deltaR.get(is));
+                allParams = isOpenLoop
+                        ? new VaryingParamsIterator(arrayLengthR.get(is), clientsRangeR.get(is), 0, rateR.get(is))
+                        : new VaryingParamsIterator(arrayLengthR.get(is), clientsRangeR.get(is), deltaR.get(is), 0);
                 break;
             case DELTA:
-                allParams = new VaryingParamsIterator(arrayLengthR.get(is), clientsR.get(is), deltaRangeR.get(is));
+                allParams = new VaryingParamsIterator(arrayLengthR.get(is), clientsR.get(is), deltaRangeR.get(is), 0);
+                break;
+            case RATE:
+                allParams = new VaryingParamsIterator(arrayLengthR.get(is), clientsR.get(is), 0, rateRangeR.get(is));
                 break;
             default:
                 throw new IllegalStateException("Unexpected varying: " + param);
@@ -84,39 +303,234 @@ public class ServerBenchmark implements Runnable {
         int rounds = 0;
         while (allParams.hasNext()) {
             var params = allParams.next();
+            RequestSchedule schedule = isOpenLoop
+                    ? RequestSchedule.openLoop(loadMode, params.rate)
+                    : RequestSchedule.closedLoop(params.delta);
             rounds += 1;
             System.out.printf("Round #%d\n", rounds);
             System.out.printf("\t- Architecture: %s\n", server.name);
             System.out.printf("\t- Clients: %d\n", params.clients);
             System.out.printf("\t- Array length: %d\n", params.arrayLength);
-            System.out.printf("\t- Time delta: %d\n", params.delta);
+            System.out.printf("\t- Load: %s\n", schedule);
             System.out.printf("\t- One client queries: %d\n", clientQueries);
+            System.out.printf("\t- Outstanding requests window: %d\n", pipelineWindow);
+            System.out.printf("\t- Client engine: %s\n", clientEngine);
+            System.out.printf("\t- Response verification: %s\n", verification);
             System.out.flush();
-            ServerBenchmark benchmark = new ServerBenchmark(server.serverSupplier.get(), new ClientService(
+            ServerBenchmark benchmark = new ServerBenchmark(serverSupplier.get(), () -> new ClientService(
                     params.clients,
                     params.arrayLength,
-                    params.delta,
+                    schedule,
                     clientQueries,
+                    pipelineWindow,
+                    verification,
                     protocol,
                     port,
+                    clientEngine,
+                    clientSelectorThreads,
                     false
-            ));
+            ), plan, isFlightRecorded);
             benchmark.run();
             double avgTime = benchmark.getAverageClientWaitingTime();
-            System.out.printf("\t- Average client waiting time, ms: % .4f\n\n", avgTime);
+            LatencyHistogram latencies = benchmark.getLatencyHistogram();
+            if (plan.hasWarmup()) {
+                System.out.printf("\t- Warm-up iterations: %d, %s (coefficient of variation %.2f%%)\n",
+                        benchmark.getResult().getWarmupIterations(),
+                        benchmark.getResult().isSteady() ? "steady" : "not steady",
+                        100 * benchmark.getResult().getWarmupCoefficientOfVariation());
+            }
+            System.out.printf("\t- Average client waiting time, ms: % .4f\n", avgTime);
+            if (benchmark.getResult().getMeasuredIterations() > 1) {
+                System.out.printf("\t- Over %d iterations, 95%% confidence: mean %.4f +- %.4f ms, p99 %.4f +- %.4f ms, "
+                                + "throughput %.2f +- %.2f requests/s\n",
+                        benchmark.getResult().getMeasuredIterations(),
+                        benchmark.getResult().getMeanLatencySummary().getMean(),
+                        benchmark.getResult().getMeanLatencySummary().getConfidenceHalfWidth(),
+                        benchmark.getResult().getP99LatencySummary().getMean(),
+                        benchmark.getResult().getP99LatencySummary().getConfidenceHalfWidth(),
+                        benchmark.getResult().getThroughputSummary().getMean(),
+                        benchmark.getResult().getThroughputSummary().getConfidenceHalfWidth());
+            }
+            System.out.printf("\t- Waiting time percentiles, ms: p50 %.4f, p90 %.4f, p99 %.4f, p99.9 %.4f, max %.4f\n",
+                    millis(latencies.getValueAtPercentile(50)),
+                    millis(latencies.getValueAtPercentile(90)),
+                    millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)),
+                    millis(latencies.getMax()));
+            System.out.printf("\t- Throughput, requests/s: %.2f\n", benchmark.getThroughput());
+            System.out.printf("\t- Failed requests: %d\n", benchmark.getFailedRequests());
+            System.out.printf("\t- Rejected requests: %d (server rejected %d, dropped %d)\n",
+                    benchmark.getRejectedRequests(),
+                    benchmark.getClientTaskExecutor().getRejectedTasks(),
+                    benchmark.getClientTaskExecutor().getDroppedTasks());
+            System.out.printf("\t- Server task queue depth: %d at the end, %d at most\n",
+                    benchmark.getClientTaskExecutor().getQueueDepth(),
+                    benchmark.getClientTaskExecutor().getMaxQueueDepth());
+            benchmark.getResultCache().ifPresent(cache -> System.out.printf(
+                    "\t- Result cache hits: %d, misses: %d, coalesced: %d\n",
+                    cache.getHits(),
+                    cache.getMisses(),
+                    cache.getCoalesced()));
+            benchmark.getStageLatencies().ifPresent(ServerBenchmark::printStageLatencies);
+            benchmark.getFlightRecordingSummary().ifPresent(ServerBenchmark::printFlightRecordingSummary);
+            System.out.println();
             os.printf("%f,", avgTime);
+            roundsOs.printf(Locale.ROOT, "%d,%s,%d,%d,%s,%d,%d,%d,%f,%f,%f,%f,%f,%f,%f,%d,%d\n",
+                    rounds,
+                    server.name,
+                    params.arrayLength,
+                    params.clients,
+                    loadMode,
+                    params.delta,
+                    params.rate,
+                    clientQueries,
+                    avgTime,
+                    millis(latencies.getValueAtPercentile(50)),
+                    millis(latencies.getValueAtPercentile(90)),
+                    millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)),
+                    millis(latencies.getMax()),
+                    benchmark.getThroughput(),
+                    benchmark.getRejectedRequests(),
+                    benchmark.getFailedRequests());
+            roundsOs.flush();
         }
         is.close();
         os.close();
+        roundsOs.close();
     }
 
     public ServerBenchmark(ArraySortingServer server, ClientService clientService) {
+        this(server, () -> clientService, MeasurementPlan.SINGLE_RUN);
+    }
+
+    public ServerBenchmark(ArraySortingServer server, Supplier<ClientService> clientServices, MeasurementPlan plan) {
+        this(server, clientServices, plan, false);
+    }
+
+    // Each warm-up and measured iteration runs a fresh ClientService against the same server. A flight recording
+    // covers the measured iterations, clients included, as they share this JVM with the server
+    public ServerBenchmark(ArraySortingServer server,
+                           Supplier<ClientService> clientServices,
+                           MeasurementPlan plan,
+                           boolean isFlightRecorded) {
         this.server = server;
-        this.clientService = clientService;
+        this.clientServices = clientServices;
+        this.plan = plan;
+        this.isFlightRecorded = isFlightRecorded;
+    }
+
+    public RoundResult getResult() {
+        return result;
     }
 
     public double getAverageClientWaitingTime() {
-        return clientService.getAverageRun();
+        return result.getAverageClientWaitingTime();
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return result.getLatencyHistogram();
+    }
+
+    public double getThroughput() {
+        return result.getThroughput();
+    }
+
+    public long getFailedRequests() {
+        return result.getFailedRequests();
+    }
+
+    public long getRejectedRequests() {
+        return result.getRejectedRequests();
+    }
+
+    public ClientTaskExecutor getClientTaskExecutor() {
+        return server.getClientTaskExecutor();
+    }
+
+    public Optional<Map<String, Object>> getFlightRecordingSummary() {
+        return Optional.ofNullable(flightRecordingSummary);
+    }
+
+    public Optional<SortedResultCache> getResultCache() {
+        return server.getResultCache();
+    }
+
+    public Optional<StageLatencies> getStageLatencies() {
+        return server.getStageLatencies();
+    }
+
+    // Every measured value of the round, in a stable column order
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(result.getMetrics());
+        metrics.putAll(getServerMetrics(server));
+        getFlightRecordingSummary().ifPresent(metrics::putAll);
+        return metrics;
+    }
+
+    // What the server itself counted, the same whether it ran in this JVM or in its own
+    public static Map<String, Object> getServerMetrics(ArraySortingServer server) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("virtual_threads", server.isUsingVirtualThreads());
+        metrics.put("server_rejected", server.getClientTaskExecutor().getRejectedTasks());
+        metrics.put("server_dropped", server.getClientTaskExecutor().getDroppedTasks());
+        metrics.put("server_queue_depth", server.getClientTaskExecutor().getQueueDepth());
+        metrics.put("server_max_queue_depth", server.getClientTaskExecutor().getMaxQueueDepth());
+        server.getResultCache().ifPresent(cache -> {
+            metrics.put("cache_hits", cache.getHits());
+            metrics.put("cache_misses", cache.getMisses());
+            metrics.put("cache_coalesced", cache.getCoalesced());
+        });
+        server.getStageLatencies().ifPresent(stageLatencies -> {
+            for (StageLatencies.Stage stage : StageLatencies.Stage.values()) {
+                LatencyHistogram histogram = stageLatencies.getHistogram(stage);
+                String name = "stage_" + stage.name().toLowerCase(Locale.ROOT);
+                metrics.put(name + "_mean_ms", histogram.getMean() / TimeUnit.MILLISECONDS.toNanos(1));
+                metrics.put(name + "_p50_ms", millis(histogram.getValueAtPercentile(50)));
+                metrics.put(name + "_p99_ms", millis(histogram.getValueAtPercentile(99)));
+            }
+        });
+        return metrics;
+    }
+
+    private static void printStageLatencies(StageLatencies stageLatencies) {
+        System.out.println("\t- Server stage latencies, ms:");
+        System.out.printf("\t\t%-8s %10s %10s %10s %10s %10s\n", "stage", "requests", "mean", "p50", "p99", "max");
+        for (StageLatencies.Stage stage : StageLatencies.Stage.values()) {
+            LatencyHistogram histogram = stageLatencies.getHistogram(stage);
+            System.out.printf("\t\t%-8s %10d %10.4f %10.4f %10.4f %10.4f\n",
+                    stage.name().toLowerCase(Locale.ROOT),
+                    histogram.getCount(),
+                    histogram.getMean() / TimeUnit.MILLISECONDS.toNanos(1),
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getMax()));
+        }
+    }
+
+    private static void printFlightRecordingSummary(Map<String, Object> summary) {
+        System.out.printf("\t- Allocated: %.1f MB, %.1f MB/s\n",
+                summary.get("jfr_allocated_mb"),
+                summary.get("jfr_allocation_mb_per_s"));
+        System.out.printf("\t- GC: %d collections, pauses total %.3f ms, max %.3f ms\n",
+                summary.get("jfr_gc_count"),
+                summary.get("jfr_gc_pause_total_ms"),
+                summary.get("jfr_gc_pause_max_ms"));
+        System.out.printf("\t- Safepoints: %d, total %.3f ms, of which reaching them %.3f ms\n",
+                summary.get("jfr_safepoints"),
+                summary.get("jfr_safepoint_total_ms"),
+                summary.get("jfr_time_to_safepoint_ms"));
+        System.out.printf("\t- Threads: %d active, %d peak, %d started during the round\n",
+                summary.get("jfr_threads_active"),
+                summary.get("jfr_threads_peak"),
+                summary.get("jfr_threads_started"));
+        String sites = summary.get("jfr_top_allocation_sites").toString();
+        if (!sites.isEmpty()) {
+            System.out.println("\t- Top allocation sites:");
+            for (String site : sites.split("; ")) {
+                System.out.printf("\t\t%s\n", site);
+            }
+        }
     }
 
     @Override
@@ -124,7 +538,24 @@ public class ServerBenchmark implements Runnable {
         ExecutorService serverExecutor = Executors.newSingleThreadExecutor();
         serverExecutor.submit(server);
         server.awaitServed();
-        clientService.run();
+        FlightRecording recording = isFlightRecorded ? new FlightRecording() : null;
+        result = RoundResult.measure(
+                plan,
+                () -> {
+                    ClientService clientService = clientServices.get();
+                    clientService.run();
+                    return IterationResult.of(clientService);
+                },
+                () -> {
+                    server.getStageLatencies().ifPresent(StageLatencies::reset);
+                    server.getClientTaskExecutor().resetMaxQueueDepth();
+                    if (recording != null) {
+                        recording.start();
+                    }
+                });
+        if (recording != null) {
+            flightRecordingSummary = recording.stop();
+        }
         serverExecutor.shutdownNow();
         try {
             if (!serverExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
@@ -134,12 +565,20 @@ public class ServerBenchmark implements Runnable {
         }
     }
 
-    private static class ServerSupplierAndName {
-        public final Supplier<ArraySortingServer> serverSupplier;
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private interface ServerFactory {
+        ArraySortingServer make(SortingEngine sortingEngine, ServerSettings settings);
+    }
+
+    private static class ServerFactoryAndName {
+        public final ServerFactory serverFactory;
         public final String name;
 
-        private ServerSupplierAndName(Supplier<ArraySortingServer> serverSupplier, String name) {
-            this.serverSupplier = serverSupplier;
+        private ServerFactoryAndName(ServerFactory serverFactory, String name) {
+            this.serverFactory = serverFactory;
             this.name = name;
         }
     }
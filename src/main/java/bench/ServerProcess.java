@@ -0,0 +1,74 @@
+package bench;
+
+import server.ArraySortingServer;
+import server.StageLatencies;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Child JVM of the Orchestrator that runs the server of one round. Commands on stdin:
+//     START <sweep properties of one point>  answered with READY once the server accepts clients
+//     RESET                                  answered with READY after dropping the warm-up stage latencies
+//                                            and maximum queue depth,
+//                                            starts the flight recording if the sweep asks for one
+//     STOP                                   answered with RESULT <server metrics> after the server is closed
+public class ServerProcess {
+    public static void main(String[] args) throws IOException {
+        ControlChannel parent = ControlChannel.toParent();
+        ExecutorService serverExecutor = Executors.newSingleThreadExecutor();
+        ArraySortingServer server = null;
+        FlightRecording recording = null;
+        try {
+            while (true) {
+                ControlChannel.Message message = parent.receive("START", "RESET", "STOP");
+                switch (message.command) {
+                    case "START":
+                        SweepConfig config = SweepConfig.of(message.params);
+                        server = BenchmarkSweep.makeServer(config, config.points().get(0));
+                        if (config.getBoolean(SweepConfig.JFR, false)) {
+                            recording = new FlightRecording();
+                        }
+                        serverExecutor.submit(server);
+                        server.awaitServed();
+                        parent.send("READY");
+                        break;
+                    case "RESET":
+                        if (server == null) {
+                            throw new IllegalStateException("Server is not started");
+                        }
+                        server.getStageLatencies().ifPresent(StageLatencies::reset);
+                        server.getClientTaskExecutor().resetMaxQueueDepth();
+                        if (recording != null) {
+                            recording.start();
+                        }
+                        parent.send("READY");
+                        break;
+                    default:
+                        if (server == null) {
+                            throw new IllegalStateException("Server is not started");
+                        }
+                        // Stopped first, so collecting the metrics is not recorded
+                        Map<String, Object> summary = recording == null ? Map.of() : recording.stop();
+                        Map<String, Object> metrics = ServerBenchmark.getServerMetrics(server);
+                        metrics.putAll(summary);
+                        serverExecutor.shutdownNow();
+                        if (!serverExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                            throw new RuntimeException("Server won't close");
+                        }
+                        parent.send("RESULT", metrics);
+                        return;
+                }
+            }
+        } catch (RuntimeException e) {
+            parent.send("ERROR", Map.of("message", String.valueOf(e)));
+            throw e;
+        } catch (InterruptedException e) {
+            parent.send("ERROR", Map.of("message", String.valueOf(e)));
+        } finally {
+            serverExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package bench;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+// Parameters of a non-interactive sweep, read from a properties file and overridden by key=value arguments.
+// List keys take comma-separated values, and the sweep runs every combination of them
+public class SweepConfig {
+    public static final String ARCHITECTURES = "architectures";
+    public static final String PROTOCOLS = "protocols";
+    public static final String ARRAY_LENGTHS = "array_lengths";
+    public static final String CLIENTS = "clients";
+    public static final String DELTAS_MS = "deltas_ms";
+    public static final String RATES_RPS = "rates_rps";
+    public static final String TASK_THREADS = "task_threads";
+    public static final String REPETITIONS = "repetitions";
+    public static final String LOAD = "load";
+    public static final String SORTING = "sorting";
+    public static final String QUERIES = "queries";
+    public static final String WINDOW = "window";
+    public static final String CLIENT_ENGINE = "client_engine";
+    public static final String CLIENT_SELECTOR_THREADS = "client_selector_threads";
+    public static final String VERIFICATION = "verification";
+    public static final String RESULT_CACHE_KIB = "result_cache_kib";
+    public static final String STAGE_TRACING = "stage_tracing";
+    public static final String PORT = "port";
+    public static final String OUTPUT = "output";
+    public static final String FORMAT = "format";
+    public static final String WARMUP_ITERATIONS = "warmup_iterations";
+    public static final String MAX_WARMUP_ITERATIONS = "max_warmup_iterations";
+    public static final String STEADY_WINDOW = "steady_window";
+    public static final String STEADY_CV_PERCENT = "steady_cv_percent";
+    public static final String ITERATIONS = "iterations";
+    public static final String SEPARATE_JVMS = "separate_jvms";
+    public static final String LOAD_GENERATORS = "load_generators";
+    public static final String SERVER_CPUS = "server_cpus";
+    public static final String LOAD_GENERATOR_CPUS = "load_generator_cpus";
+    public static final String JVM_OPTIONS = "jvm_options";
+    public static final String JFR = "jfr";
+
+    private static final Set<String> KEYS = Set.of(
+            ARCHITECTURES, PROTOCOLS, ARRAY_LENGTHS, CLIENTS, DELTAS_MS, RATES_RPS, TASK_THREADS, REPETITIONS,
+            LOAD, SORTING, QUERIES, WINDOW, CLIENT_ENGINE, CLIENT_SELECTOR_THREADS, VERIFICATION,
+            RESULT_CACHE_KIB, STAGE_TRACING, PORT, OUTPUT, FORMAT, WARMUP_ITERATIONS, MAX_WARMUP_ITERATIONS,
+            STEADY_WINDOW, STEADY_CV_PERCENT, ITERATIONS, SEPARATE_JVMS, LOAD_GENERATORS, SERVER_CPUS,
+            LOAD_GENERATOR_CPUS, JVM_OPTIONS, JFR);
+
+    private final Properties properties;
+
+    public SweepConfig(Properties properties) {
+        for (String key : properties.stringPropertyNames()) {
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException(String.format("Unknown sweep parameter '%s', expected one of %s",
+                        key, KEYS.stream().sorted().collect(Collectors.joining(", "))));
+            }
+        }
+        this.properties = properties;
+    }
+
+    // An argument without '=' is a properties file, the key=value arguments after it override its values
+    public static SweepConfig fromArgs(String[] args) throws IOException {
+        Properties properties = new Properties();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                try (Reader reader = new FileReader(arg)) {
+                    properties.load(reader);
+                }
+            } else {
+                properties.setProperty(arg.substring(0, separator).trim(), arg.substring(separator + 1).trim());
+            }
+        }
+        return new SweepConfig(properties);
+    }
+
+    // The properties of a sweep that runs only this point, with its own number of clients
+    public Map<String, String> pinnedTo(Point point, int clients) {
+        Map<String, String> pinned = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            pinned.put(key, properties.getProperty(key));
+        }
+        pinned.put(ARCHITECTURES, point.architecture);
+        pinned.put(PROTOCOLS, point.protocol);
+        pinned.put(TASK_THREADS, Integer.toString(point.taskThreads));
+        pinned.put(ARRAY_LENGTHS, Integer.toString(point.arrayLength));
+        pinned.put(CLIENTS, Integer.toString(clients));
+        pinned.put(DELTAS_MS, Integer.toString(point.delta));
+        pinned.put(RATES_RPS, Integer.toString(point.rate));
+        pinned.put(REPETITIONS, "1");
+        return pinned;
+    }
+
+    public static SweepConfig of(Map<String, String> params) {
+        Properties properties = new Properties();
+        properties.putAll(params);
+        return new SweepConfig(properties);
+    }
+
+    public String get(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue).trim().toLowerCase(Locale.ROOT);
+    }
+
+    public String getPath(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue).trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return parseInt(key, properties.getProperty(key, Integer.toString(defaultValue)));
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(properties.getProperty(key, Boolean.toString(defaultValue)).trim());
+    }
+
+    public List<String> getList(String key, String defaultValue) {
+        return Arrays.stream(get(key, defaultValue).split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    public List<Integer> getIntList(String key, String defaultValue) {
+        return getList(key, defaultValue).stream()
+                .map(value -> parseInt(key, value))
+                .collect(Collectors.toList());
+    }
+
+    public MeasurementPlan getMeasurementPlan() {
+        int minWarmup = getInt(WARMUP_ITERATIONS, 0);
+        return new MeasurementPlan(
+                minWarmup,
+                Math.max(minWarmup, getInt(MAX_WARMUP_ITERATIONS, 3 * minWarmup)),
+                getInt(STEADY_WINDOW, 3),
+                getInt(STEADY_CV_PERCENT, 5) / 100.0,
+                getInt(ITERATIONS, 1));
+    }
+
+    public boolean isOpenLoop() {
+        return !get(LOAD, "closed").equals("closed");
+    }
+
+    // Only the delta or the rate list is swept, whichever the load mode uses
+    public List<Point> points() {
+        List<Point> points = new ArrayList<>();
+        List<Integer> deltas = isOpenLoop() ? List.of(0) : getIntList(DELTAS_MS, "0");
+        List<Integer> rates = isOpenLoop() ? getIntList(RATES_RPS, "100") : List.of(0);
+        int repetitions = getInt(REPETITIONS, 1);
+        String defaultTaskThreads = Integer.toString(Runtime.getRuntime().availableProcessors());
+        for (String architecture : getList(ARCHITECTURES, "blocking,nonblocking")) {
+            for (String protocol : getList(PROTOCOLS, "primitive")) {
+                for (int taskThreads : getIntList(TASK_THREADS, defaultTaskThreads)) {
+                    for (int arrayLength : getIntList(ARRAY_LENGTHS, "1000")) {
+                        for (int clients : getIntList(CLIENTS, "10")) {
+                            for (int delta : deltas) {
+                                for (int rate : rates) {
+                                    for (int repetition = 1; repetition <= repetitions; ++repetition) {
+                                        points.add(new Point(architecture, protocol, taskThreads,
+                                                arrayLength, clients, delta, rate, repetition));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return points;
+    }
+
+    private static int parseInt(String key, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    String.format("Sweep parameter '%s' expects integers, got '%s'", key, value), e);
+        }
+    }
+
+    public static class Point {
+        public final String architecture;
+        public final String protocol;
+        public final int taskThreads;
+        public final int arrayLength;
+        public final int clients;
+        public final int delta;
+        public final int rate;
+        public final int repetition;
+
+        public Point(String architecture,
+                     String protocol,
+                     int taskThreads,
+                     int arrayLength,
+                     int clients,
+                     int delta,
+                     int rate,
+                     int repetition) {
+            this.architecture = architecture;
+            this.protocol = protocol;
+            this.taskThreads = taskThreads;
+            this.arrayLength = arrayLength;
+            this.clients = clients;
+            this.delta = delta;
+            this.rate = rate;
+            this.repetition = repetition;
+        }
+    }
+}
@@ -9,39 +9,53 @@ public class VaryingParamsIterator implements Iterator<VaryingParamsIterator.Var
     private int arrayLength;
     private int clients;
     private int delta;
+    private int rate;
     private final VaryingParameter param;
     private final RangeReader.Range paramRange;
 
-    public VaryingParamsIterator(RangeReader.Range arrayLength, int clients, int delta) {
+    public VaryingParamsIterator(RangeReader.Range arrayLength, int clients, int delta, int rate) {
         this.arrayLength = arrayLength.min - arrayLength.step;
         this.clients = clients;
         this.delta = delta;
+        this.rate = rate;
         this.param = VaryingParameter.AR_LENGTH;
         this.paramRange = arrayLength;
     }
 
-    public VaryingParamsIterator(int arrayLength, RangeReader.Range clients, int delta) {
+    public VaryingParamsIterator(int arrayLength, RangeReader.Range clients, int delta, int rate) {
         this.arrayLength = arrayLength;
         this.clients = clients.min - clients.step;
         this.delta = delta;
+        this.rate = rate;
         this.param = VaryingParameter.TOTAL_CLIENTS;
         this.paramRange = clients;
     }
 
-    public VaryingParamsIterator(int arrayLength, int clients, RangeReader.Range delta) {
+    public VaryingParamsIterator(int arrayLength, int clients, RangeReader.Range delta, int rate) {
         this.arrayLength = arrayLength;
         this.clients = clients;
         this.delta = delta.min - delta.step;
+        this.rate = rate;
         this.param = VaryingParameter.DELTA;
         this.paramRange = delta;
     }
 
+    public VaryingParamsIterator(int arrayLength, int clients, int delta, RangeReader.Range rate) {
+        this.arrayLength = arrayLength;
+        this.clients = clients;
+        this.delta = delta;
+        this.rate = rate.min - rate.step;
+        this.param = VaryingParameter.RATE;
+        this.paramRange = rate;
+    }
+
     @Override
     public boolean hasNext() {
         Map<VaryingParameter, Integer> curValMap = Map.of(
                 VaryingParameter.DELTA, delta,
                 VaryingParameter.AR_LENGTH, arrayLength,
-                VaryingParameter.TOTAL_CLIENTS, clients
+                VaryingParameter.TOTAL_CLIENTS, clients,
+                VaryingParameter.RATE, rate
         );
 
         return curValMap.get(param) + paramRange.step <= paramRange.max;
@@ -59,25 +73,32 @@ public class VaryingParamsIterator implements Iterator<VaryingParamsIterator.Var
             case TOTAL_CLIENTS:
                 clients += paramRange.step;
                 break;
+            case RATE:
+                rate += paramRange.step;
+                break;
         }
-        return new VaryingParams(arrayLength, clients, delta);
+        return new VaryingParams(arrayLength, clients, delta, rate);
     }
 
     enum VaryingParameter {
         AR_LENGTH,
         TOTAL_CLIENTS,
-        DELTA
+        DELTA,
+        RATE
     }
 
     public static class VaryingParams {
         public final int arrayLength;
         public final int clients;
         public final int delta;
+        // Requests per second of one client, used only by open-loop load
+        public final int rate;
 
-        public VaryingParams(int arrayLength, int clients, int delta) {
+        public VaryingParams(int arrayLength, int clients, int delta, int rate) {
             this.arrayLength = arrayLength;
             this.clients = clients;
             this.delta = delta;
+            this.rate = rate;
         }
     }
 }
@@ -0,0 +1,58 @@
+package client;
+
+import protocol.ListTransferringProtocol;
+import protocol.MessageAccepter;
+import protocol.MessageCreator;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+// The request one client repeats, encoded once, and what a correct response to it looks like.
+// Not thread-safe: verification keeps a sampling counter
+class ArrayRequest {
+    private static final int CHECKSUM_SAMPLE_RATE = 16;
+
+    private final MessageCreator encodedRequest;
+    private final int[] sortedArray;
+    private final ByteBuffer encodedResponse;
+    private final long responseChecksum;
+    private final ResponseVerification verification;
+    private long responsesVerified = 0;
+
+    ArrayRequest(int[] array, ListTransferringProtocol protocol, ResponseVerification verification) {
+        this.encodedRequest = new MessageCreator(array, protocol);
+        this.sortedArray = array.clone();
+        Arrays.sort(sortedArray);
+        this.encodedResponse = protocol.encode(sortedArray).asReadOnlyBuffer();
+        this.responseChecksum = checksum(encodedResponse);
+        this.verification = verification;
+    }
+
+    MessageCreator newMessage() {
+        return encodedRequest.duplicate();
+    }
+
+    boolean verify(MessageAccepter accepter) throws ProtocolException {
+        ByteBuffer body = accepter.acceptedBody().orElseThrow();
+        switch (verification) {
+            case NONE:
+                return true;
+            case CHECKSUM:
+                return responsesVerified++ % CHECKSUM_SAMPLE_RATE != 0 || checksum(body) == responseChecksum;
+            case BYTES:
+                return body.equals(encodedResponse.duplicate());
+            case DECODE:
+                return Arrays.equals(accepter.accepted().orElseThrow(), sortedArray);
+            default:
+                throw new IllegalStateException("Unexpected verification: " + verification);
+        }
+    }
+
+    private static long checksum(ByteBuffer bytes) {
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes.duplicate());
+        return checksum.getValue();
+    }
+}
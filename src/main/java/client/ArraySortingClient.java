@@ -7,108 +7,188 @@ import protocol.MessageCreator;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.ProtocolException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
-import java.util.*;
+import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 public class ArraySortingClient implements Runnable {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
     private final int arrayLength;
-    private final int requestDeltaMs;
+    private final RequestSchedule schedule;
     private final int requestsTotal;
+    private final int pipelineWindow;
+    private final ResponseVerification verification;
     private final ListTransferringProtocol listProtocol;
     private final InetSocketAddress serverAddress;
     private final SimultaneousJobsStats.SingleSimultaneousJobStats statsCounter;
     private final ContextLogger contextLogger;
 
     public ArraySortingClient(int arrayLength,
-                              int requestDeltaMs,
+                              RequestSchedule schedule,
                               int requestsTotal,
+                              int pipelineWindow,
+                              ResponseVerification verification,
                               ListTransferringProtocol listProtocol,
                               InetSocketAddress serverAddress,
                               SimultaneousJobsStats statsCounter,
                               boolean logInfo) {
         this.arrayLength = arrayLength;
-        this.requestDeltaMs = requestDeltaMs;
+        this.schedule = schedule;
         this.requestsTotal = requestsTotal;
+        this.pipelineWindow = pipelineWindow;
+        this.verification = verification;
         this.listProtocol = listProtocol;
         this.serverAddress = serverAddress;
         this.statsCounter = statsCounter.registerStats();
         this.contextLogger = new ContextLogger(String.format("Client %s", this), logInfo);
     }
 
+    public ArraySortingClient(int arrayLength,
+                              int requestDeltaMs,
+                              int requestsTotal,
+                              int pipelineWindow,
+                              ListTransferringProtocol listProtocol,
+                              InetSocketAddress serverAddress,
+                              SimultaneousJobsStats statsCounter,
+                              boolean logInfo) {
+        this(arrayLength,
+                RequestSchedule.closedLoop(requestDeltaMs),
+                requestsTotal,
+                pipelineWindow,
+                ResponseVerification.DECODE,
+                listProtocol,
+                serverAddress,
+                statsCounter,
+                logInfo);
+    }
+
     @Override
     public void run() {
-        List<Integer> arrayToSort = new ArrayList<>();
-        List<Integer> sortedArray = new ArrayList<>();
-        Random rand = new Random();
-        for (int i = 0; i < arrayLength; ++i) {
-            Integer randInt = rand.nextInt();
-            arrayToSort.add(randInt);
-            sortedArray.add(randInt);
-        }
-        sortedArray.sort(Comparator.naturalOrder());
-        int arrayBufferSize = new MessageCreator(sortedArray, listProtocol).createdBuffer().capacity();
+        Random random = new Random();
+        ArrayRequest request = new ArrayRequest(random.ints(arrayLength).toArray(), listProtocol, verification);
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE).flip();
+        MessageAccepter accepter = new MessageAccepter(listProtocol);
+        // An open loop never waits for responses before sending
+        boolean isWindowed = pipelineWindow > 0 && !schedule.isOpenLoop();
+        Semaphore outstandingRequests = new Semaphore(isWindowed ? pipelineWindow : Integer.MAX_VALUE);
 
         contextLogger.info(String.format("Connecting to server at %s", serverAddress.toString()));
         try (SocketChannel socket = SocketChannel.open()) {
             statsCounter.start();
             ExecutorService reader = Executors.newSingleThreadExecutor();
             ExecutorService writer = Executors.newSingleThreadExecutor();
+            // A failed read or write fails the whole client: nothing more is sent, and the reads still pending
+            // fail fast on the shut down input, so every unanswered request counts as an error
+            AtomicBoolean isFailed = new AtomicBoolean(false);
+            Consumer<IOException> fail = e -> {
+                outstandingRequests.release();
+                if (!isFailed.compareAndSet(false, true)) {
+                    return;
+                }
+                contextLogger.handleException(e);
+                writer.shutdownNow();
+                try {
+                    socket.shutdownInput();
+                } catch (IOException shutdownException) {
+                    contextLogger.handleException(shutdownException);
+                }
+            };
             socket.connect(serverAddress);
             contextLogger.info("Connected");
 
             contextLogger.info("Running");
-            for (int requestN = 0; requestN < requestsTotal; ++requestN) {
-                long iterationStart = System.nanoTime();
+            long intendedSendTime = System.nanoTime();
+            for (int requestN = 0; requestN < requestsTotal && !isFailed.get(); ++requestN) {
+                long iterationStart;
+                if (schedule.isOpenLoop()) {
+                    waitUntil(intendedSendTime);
+                    iterationStart = intendedSendTime;
+                    intendedSendTime += schedule.nextIntervalNanos(random);
+                } else {
+                    iterationStart = System.nanoTime();
+                }
 
                 reader.submit(() -> {
-                    ByteBuffer arrayBuffer = ByteBuffer.allocate(arrayBufferSize);
-                    MessageAccepter accepter = new MessageAccepter(listProtocol);
                     try {
                         contextLogger.info("Waiting for sorted array");
-                        while (arrayBuffer.hasRemaining()) {
-                            if (socket.read(arrayBuffer) < 0) {
-                                throw new IOException("Not all bytes were received");
+                        while (!accepter.isAccepted()) {
+                            if (!readBuffer.hasRemaining()) {
+                                readBuffer.clear();
+                                int bytesRead = socket.read(readBuffer);
+                                readBuffer.flip();
+                                if (bytesRead < 0) {
+                                    throw new IOException("Not all bytes were received");
+                                }
                             }
+                            accepter.accept(readBuffer);
                         }
 
-                        statsCounter.pushStat(System.nanoTime() - iterationStart);
-                        arrayBuffer.flip();
-                        accepter.accept(arrayBuffer);
-                        if (accepter.accepted().isEmpty()) {
-                            throw new IOException("Received bytes are ill-formatted");
+                        if (accepter.isBusy()) {
+                            statsCounter.pushRejected(iterationStart);
+                            outstandingRequests.release();
+                            accepter.reset();
+                            contextLogger.info("Server is busy, request rejected");
+                            return;
                         }
-                        if (!accepter.accepted().get().equals(sortedArray)) {
-                            throw new RuntimeException("Array is not sorted");
+                        if (accepter.isError()) {
+                            statsCounter.pushError(iterationStart);
+                            outstandingRequests.release();
+                            accepter.reset();
+                            contextLogger.handleException(new ProtocolException("Server failed to sort the array"));
+                            return;
+                        }
+                        statsCounter.pushStat(iterationStart, System.nanoTime() - iterationStart);
+                        outstandingRequests.release();
+                        boolean isSorted = request.verify(accepter);
+                        accepter.reset();
+                        if (!isSorted) {
+                            statsCounter.pushError(iterationStart);
+                            contextLogger.handleException(new ProtocolException("Array is not sorted"));
+                            return;
                         }
                         contextLogger.info("Array received");
                     } catch (IOException e) {
-                        contextLogger.handleException(e);
+                        statsCounter.pushError(iterationStart);
+                        fail.accept(e);
                     }
                 });
 
-                writer.submit(() -> {
-                    MessageCreator messageCreator = new MessageCreator(arrayToSort, listProtocol);
-                    ByteBuffer arrayBuffer = messageCreator.createdBuffer();
-                    try {
-                        while (arrayBuffer.hasRemaining()) {
-                            if (socket.write(arrayBuffer) < 0) {
-                                throw new IOException("Not all bytes were sent");
+                try {
+                    writer.submit(() -> {
+                        MessageCreator messageCreator = request.newMessage();
+                        try {
+                            outstandingRequests.acquire();
+                            while (messageCreator.hasRemaining()) {
+                                if (messageCreator.writeTo(socket) < 0) {
+                                    throw new IOException("Not all bytes were sent");
+                                }
                             }
+                            contextLogger.info("Array sent");
+                        } catch (IOException e) {
+                            fail.accept(e);
+                        } catch (InterruptedException ignored) {
                         }
-                        contextLogger.info("Array sent");
-                    } catch (IOException e) {
-                        contextLogger.handleException(e);
-                    }
-                });
+                    });
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
 
+                if (schedule.isOpenLoop()) {
+                    continue;
+                }
                 long iterationTimeElapsed = System.nanoTime() - iterationStart;
-                long sleepTime = Math.max(0, TimeUnit.MILLISECONDS.toNanos(requestDeltaMs) - iterationTimeElapsed);
+                long sleepTime = Math.max(0, TimeUnit.MILLISECONDS.toNanos(schedule.getRequestDeltaMs()) - iterationTimeElapsed);
                 if (requestN + 1 < requestsTotal) {
                     Thread.sleep(TimeUnit.NANOSECONDS.toMillis(sleepTime));
                 }
@@ -124,9 +204,17 @@ public class ArraySortingClient implements Runnable {
         } catch (IOException e) {
             contextLogger.handleException(e);
         } catch (InterruptedException ignored) {
-        } finally {
-            statsCounter.finish();
         }
         contextLogger.info("Finished");
     }
+
+    private static void waitUntil(long nanoTime) throws InterruptedException {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
 }
@@ -4,6 +4,7 @@ import logger.ContextLogger;
 import protocol.ListTransferringProtocol;
 import protocol.PrimitiveListTransferringProtocol;
 import server.ArraySortingServer;
+import stats.LatencyHistogram;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
@@ -15,6 +16,7 @@ import java.util.concurrent.TimeUnit;
 public class ClientService implements Runnable {
     private final List<ArraySortingClient> allClients = new ArrayList<>();
     private final SimultaneousJobsStats stats;
+    private final SelectorClientEngine selectorEngine;
     private final ContextLogger logger = new ContextLogger("ClientService", false);
 
     public static void main(String[] args) {
@@ -24,6 +26,7 @@ public class ClientService implements Runnable {
                     50,
                     20,
                     50,
+                    0,
                     new PrimitiveListTransferringProtocol(),
                     8000,
                     false
@@ -37,17 +40,39 @@ public class ClientService implements Runnable {
 
     public ClientService(int clientsTotal,
                          int arrayLength,
-                         int clientRequestDelta,
+                         RequestSchedule clientSchedule,
                          int clientRequestsTotal,
+                         int clientPipelineWindow,
+                         ResponseVerification verification,
                          ListTransferringProtocol listProtocol,
                          int port,
+                         Engine engine,
+                         int selectorThreads,
                          boolean logInfo) {
         stats = new SimultaneousJobsStats(clientsTotal);
+        if (engine == Engine.SELECTOR) {
+            selectorEngine = new SelectorClientEngine(
+                    clientsTotal,
+                    arrayLength,
+                    clientSchedule,
+                    clientRequestsTotal,
+                    clientPipelineWindow,
+                    verification,
+                    listProtocol,
+                    new InetSocketAddress(port),
+                    stats,
+                    selectorThreads,
+                    logInfo);
+            return;
+        }
+        selectorEngine = null;
         for (int i = 0; i < clientsTotal; ++i) {
             allClients.add(new ArraySortingClient(
                     arrayLength,
-                    clientRequestDelta,
+                    clientSchedule,
                     clientRequestsTotal,
+                    clientPipelineWindow,
+                    verification,
                     listProtocol,
                     new InetSocketAddress(port),
                     stats,
@@ -55,12 +80,76 @@ public class ClientService implements Runnable {
         }
     }
 
+    public ClientService(int clientsTotal,
+                         int arrayLength,
+                         RequestSchedule clientSchedule,
+                         int clientRequestsTotal,
+                         int clientPipelineWindow,
+                         ListTransferringProtocol listProtocol,
+                         int port,
+                         boolean logInfo) {
+        this(clientsTotal,
+                arrayLength,
+                clientSchedule,
+                clientRequestsTotal,
+                clientPipelineWindow,
+                ResponseVerification.DECODE,
+                listProtocol,
+                port,
+                Engine.THREAD_PER_CLIENT,
+                0,
+                logInfo);
+    }
+
+    public ClientService(int clientsTotal,
+                         int arrayLength,
+                         int clientRequestDelta,
+                         int clientRequestsTotal,
+                         int clientPipelineWindow,
+                         ListTransferringProtocol listProtocol,
+                         int port,
+                         boolean logInfo) {
+        this(clientsTotal,
+                arrayLength,
+                RequestSchedule.closedLoop(clientRequestDelta),
+                clientRequestsTotal,
+                clientPipelineWindow,
+                listProtocol,
+                port,
+                logInfo);
+    }
+
     public double getAverageRun() {
         return ((double) TimeUnit.NANOSECONDS.toMicros(stats.getAllJobsAverageStat()) / 1000.0);
     }
 
+    public long getRejectedRequests() {
+        return stats.getAllJobsRejected();
+    }
+
+    public long getFailedRequests() {
+        return stats.getAllJobsErrors();
+    }
+
+    public double getThroughput() {
+        return stats.getThroughput();
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return stats.getLatencyHistogram();
+    }
+
     @Override
     public void run() {
+        if (selectorEngine != null) {
+            logger.info("Starting selector client engine");
+            try {
+                selectorEngine.run();
+            } finally {
+                stats.stopMeasurement();
+            }
+            return;
+        }
         ExecutorService executor = Executors.newFixedThreadPool(allClients.size());
         logger.info("Starting client service");
         allClients.forEach(executor::submit);
@@ -70,6 +159,13 @@ public class ClientService implements Runnable {
                 throw new RuntimeException("ClientService run is too long");
             }
         } catch (InterruptedException ignored) {
+        } finally {
+            stats.stopMeasurement();
         }
     }
+
+    public enum Engine {
+        THREAD_PER_CLIENT,
+        SELECTOR
+    }
 }
@@ -0,0 +1,80 @@
+package client;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// When a client sends its requests. A closed loop sends the next request delta after the previous one was sent,
+// and waits while too many responses are outstanding. An open loop sends at a fixed average rate no matter how
+// the server keeps up, and latency is measured from the intended send time, free of coordinated omission
+public class RequestSchedule {
+    private final Mode mode;
+    private final int requestDeltaMs;
+    private final double requestsPerSecond;
+
+    private RequestSchedule(Mode mode, int requestDeltaMs, double requestsPerSecond) {
+        this.mode = mode;
+        this.requestDeltaMs = requestDeltaMs;
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public static RequestSchedule closedLoop(int requestDeltaMs) {
+        return new RequestSchedule(Mode.CLOSED_LOOP, requestDeltaMs, 0);
+    }
+
+    public static RequestSchedule openLoop(Mode mode, double requestsPerSecond) {
+        if (mode == Mode.CLOSED_LOOP) {
+            throw new IllegalArgumentException("Open loop needs a constant or Poisson arrival mode");
+        }
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Request rate must be positive");
+        }
+        return new RequestSchedule(mode, 0, requestsPerSecond);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isOpenLoop() {
+        return mode != Mode.CLOSED_LOOP;
+    }
+
+    public int getRequestDeltaMs() {
+        return requestDeltaMs;
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    // Time between two intended sends of an open loop
+    public long nextIntervalNanos(Random random) {
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        switch (mode) {
+            case CONSTANT_RATE:
+                return (long) meanIntervalNanos;
+            case POISSON:
+                return (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+            default:
+                throw new IllegalStateException("Closed loop has no arrival intervals");
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (mode) {
+            case CONSTANT_RATE:
+                return String.format("open loop, constant %.2f requests/s", requestsPerSecond);
+            case POISSON:
+                return String.format("open loop, Poisson %.2f requests/s", requestsPerSecond);
+            default:
+                return String.format("closed loop, %d ms delta", requestDeltaMs);
+        }
+    }
+
+    public enum Mode {
+        CLOSED_LOOP,
+        CONSTANT_RATE,
+        POISSON
+    }
+}
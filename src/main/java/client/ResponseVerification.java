@@ -0,0 +1,11 @@
+package client;
+
+// How much of a response a client checks, from nothing to decoding it in full
+public enum ResponseVerification {
+    NONE,
+    // Checksum of the body, compared with the expected one for a sample of the responses
+    CHECKSUM,
+    // Body compared byte by byte with the pre-encoded expected response
+    BYTES,
+    DECODE
+}
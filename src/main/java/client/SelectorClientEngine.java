@@ -0,0 +1,337 @@
+package client;
+
+import logger.ContextLogger;
+import protocol.ListTransferringProtocol;
+import protocol.MessageAccepter;
+import protocol.MessageCreator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Drives many client connections from a few selector threads instead of three threads per client.
+// Every connection paces, verifies and records its requests the same way ArraySortingClient does
+public class SelectorClientEngine implements Runnable {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final int arrayLength;
+    private final RequestSchedule schedule;
+    private final int requestsTotal;
+    private final int pipelineWindow;
+    private final ResponseVerification verification;
+    private final ListTransferringProtocol listProtocol;
+    private final InetSocketAddress serverAddress;
+    private final SimultaneousJobsStats stats;
+    private final List<SimultaneousJobsStats.SingleSimultaneousJobStats> clientStats = new ArrayList<>();
+    private final int selectorThreads;
+    private final ContextLogger engineLogger;
+
+    public SelectorClientEngine(int clientsTotal,
+                                int arrayLength,
+                                RequestSchedule schedule,
+                                int requestsTotal,
+                                int pipelineWindow,
+                                ResponseVerification verification,
+                                ListTransferringProtocol listProtocol,
+                                InetSocketAddress serverAddress,
+                                SimultaneousJobsStats stats,
+                                int selectorThreads,
+                                boolean logInfo) {
+        this.arrayLength = arrayLength;
+        this.schedule = schedule;
+        this.requestsTotal = requestsTotal;
+        this.pipelineWindow = pipelineWindow;
+        this.verification = verification;
+        this.listProtocol = listProtocol;
+        this.serverAddress = serverAddress;
+        this.stats = stats;
+        this.selectorThreads = Math.min(selectorThreads, clientsTotal);
+        this.engineLogger = new ContextLogger("Selector client engine", logInfo);
+        for (int i = 0; i < clientsTotal; ++i) {
+            clientStats.add(stats.registerStats());
+        }
+    }
+
+    @Override
+    public void run() {
+        List<EngineLoop> loops = new ArrayList<>();
+        ExecutorService loopRunners = Executors.newFixedThreadPool(selectorThreads);
+        try {
+            for (int i = 0; i < selectorThreads; ++i) {
+                loops.add(new EngineLoop());
+            }
+            engineLogger.info(String.format("Connecting %d clients to %s", clientStats.size(), serverAddress));
+            for (int i = 0; i < clientStats.size(); ++i) {
+                loops.get(i % selectorThreads).connect(clientStats.get(i));
+            }
+            engineLogger.info("Connected");
+
+            stats.startMeasurement();
+            long startTime = System.nanoTime();
+            for (EngineLoop loop : loops) {
+                loop.start(startTime);
+                loopRunners.submit(loop);
+            }
+            loopRunners.shutdown();
+            if (!loopRunners.awaitTermination(5, TimeUnit.MINUTES)) {
+                throw new RuntimeException("Selector client engine is running too long");
+            }
+        } catch (IOException e) {
+            engineLogger.handleException(e);
+        } catch (InterruptedException ignored) {
+        } finally {
+            loopRunners.shutdownNow();
+            for (EngineLoop loop : loops) {
+                loop.close();
+            }
+        }
+        engineLogger.info("Finished");
+    }
+
+    private class EngineLoop implements Runnable {
+        private final Selector selector;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private final List<Connection> connections = new ArrayList<>();
+        private final Queue<Connection> dueRequests = new PriorityQueue<>(
+                Comparator.comparingLong(connection -> connection.nextIssueTime));
+        private int activeConnections = 0;
+
+        private EngineLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        private void connect(SimultaneousJobsStats.SingleSimultaneousJobStats statsCounter) {
+            try {
+                SocketChannel socket = SocketChannel.open(serverAddress);
+                socket.configureBlocking(false);
+                Connection connection = new Connection(socket, statsCounter);
+                connection.key = socket.register(selector, SelectionKey.OP_READ, connection);
+                connections.add(connection);
+            } catch (IOException e) {
+                engineLogger.handleException(e);
+            }
+        }
+
+        private void start(long startTime) {
+            for (Connection connection : connections) {
+                connection.nextIssueTime = startTime;
+                dueRequests.add(connection);
+            }
+            activeConnections = connections.size();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (activeConnections > 0 && !Thread.currentThread().isInterrupted()) {
+                    issueDueRequests();
+                    Connection nextDue = dueRequests.peek();
+                    long waitNanos = nextDue == null ? Long.MAX_VALUE : nextDue.nextIssueTime - System.nanoTime();
+                    if (waitNanos <= 0) {
+                        selector.selectNow();
+                    } else {
+                        selector.select(nextDue == null ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+                    }
+
+                    Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext()) {
+                        SelectionKey key = iterator.next();
+                        iterator.remove();
+                        handleSelectedConnection((Connection) key.attachment());
+                    }
+                }
+            } catch (IOException e) {
+                engineLogger.handleException(e);
+            }
+        }
+
+        private void issueDueRequests() {
+            long now = System.nanoTime();
+            while (!dueRequests.isEmpty() && dueRequests.peek().nextIssueTime <= now) {
+                Connection connection = dueRequests.poll();
+                if (!connection.isActive) {
+                    continue;
+                }
+                connection.issue(now);
+                if (connection.requestsIssued < requestsTotal) {
+                    dueRequests.add(connection);
+                }
+            }
+        }
+
+        private void handleSelectedConnection(Connection connection) {
+            try {
+                if (connection.key.isReadable()) {
+                    connection.read();
+                }
+                if (connection.isActive && connection.key.isWritable()) {
+                    connection.write();
+                }
+            } catch (IOException e) {
+                engineLogger.handleException(e);
+                connection.fail();
+            }
+        }
+
+        private void close() {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                engineLogger.handleException(e);
+            }
+        }
+
+        private class Connection {
+            private final SocketChannel socket;
+            private final SimultaneousJobsStats.SingleSimultaneousJobStats statsCounter;
+            private final Random random = new Random();
+            private final ArrayRequest request = new ArrayRequest(
+                    random.ints(arrayLength).toArray(),
+                    listProtocol,
+                    verification);
+            private final MessageAccepter accepter = new MessageAccepter(listProtocol);
+            // Issue times of the requests that are not answered yet, in request order
+            private final Queue<Long> issueTimes = new ArrayDeque<>();
+            private SelectionKey key;
+            private MessageCreator messageBeingSent = null;
+            private long nextIssueTime;
+            private int requestsIssued = 0;
+            private int requestsNotSent = 0;
+            private int requestsInFlight = 0;
+            private int requestsAnswered = 0;
+            private boolean isActive = true;
+
+            private Connection(SocketChannel socket, SimultaneousJobsStats.SingleSimultaneousJobStats statsCounter) {
+                this.socket = socket;
+                this.statsCounter = statsCounter;
+            }
+
+            // Latency of an open loop counts from the intended send time, of a closed loop from the actual one
+            private void issue(long now) {
+                long issueTime = schedule.isOpenLoop() ? nextIssueTime : now;
+                issueTimes.add(issueTime);
+                ++requestsIssued;
+                ++requestsNotSent;
+                nextIssueTime = schedule.isOpenLoop()
+                        ? nextIssueTime + schedule.nextIntervalNanos(random)
+                        : issueTime + TimeUnit.MILLISECONDS.toNanos(schedule.getRequestDeltaMs());
+                try {
+                    write();
+                } catch (IOException e) {
+                    engineLogger.handleException(e);
+                    fail();
+                }
+            }
+
+            private boolean canSendNext() {
+                boolean isWindowed = pipelineWindow > 0 && !schedule.isOpenLoop();
+                return requestsNotSent > 0 && (!isWindowed || requestsInFlight < pipelineWindow);
+            }
+
+            private void write() throws IOException {
+                while (messageBeingSent != null || canSendNext()) {
+                    if (messageBeingSent == null) {
+                        messageBeingSent = request.newMessage();
+                        --requestsNotSent;
+                        ++requestsInFlight;
+                    }
+                    messageBeingSent.writeTo(socket);
+                    if (messageBeingSent.hasRemaining()) {
+                        break;
+                    }
+                    messageBeingSent = null;
+                }
+                key.interestOps(SelectionKey.OP_READ | (messageBeingSent != null ? SelectionKey.OP_WRITE : 0));
+            }
+
+            private void read() throws IOException {
+                int bytesRead;
+                while (isActive && (bytesRead = socket.read(readBuffer.clear())) != 0) {
+                    if (bytesRead < 0) {
+                        throw new IOException("Not all bytes were received");
+                    }
+                    readBuffer.flip();
+                    // The accepter copies a partial message out, so the shared buffer is free after this loop
+                    while (isActive && readBuffer.hasRemaining()) {
+                        accepter.accept(readBuffer);
+                        if (accepter.isAccepted()) {
+                            onResponse();
+                            accepter.reset();
+                        }
+                    }
+                }
+            }
+
+            private void onResponse() throws IOException {
+                long issueTime = issueTimes.remove();
+                --requestsInFlight;
+                ++requestsAnswered;
+                if (accepter.isBusy()) {
+                    statsCounter.pushRejected(issueTime);
+                } else if (accepter.isError()) {
+                    statsCounter.pushError(issueTime);
+                    engineLogger.handleException(new ProtocolException("Server failed to sort the array"));
+                } else {
+                    long latency = System.nanoTime() - issueTime;
+                    if (request.verify(accepter)) {
+                        statsCounter.pushStat(issueTime, latency);
+                    } else {
+                        statsCounter.pushError(issueTime);
+                        engineLogger.handleException(new ProtocolException("Array is not sorted"));
+                    }
+                }
+                if (requestsAnswered == requestsTotal) {
+                    finish();
+                    return;
+                }
+                write();
+            }
+
+            // Every request that will never be answered is an error
+            private void fail() {
+                for (long issueTime : issueTimes) {
+                    statsCounter.pushError(issueTime);
+                }
+                issueTimes.clear();
+                finish();
+            }
+
+            private void finish() {
+                if (isActive) {
+                    isActive = false;
+                    --activeConnections;
+                    close();
+                }
+            }
+
+            private void close() {
+                if (key != null) {
+                    key.cancel();
+                }
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    engineLogger.handleException(e);
+                }
+            }
+        }
+    }
+}
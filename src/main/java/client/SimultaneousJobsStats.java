@@ -1,20 +1,27 @@
 package client;
 
+import stats.LatencyHistogram;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+// Requests are measured only inside an explicit window. It opens when every job has started and stays open
+// until stopMeasurement(). A request counts if it was sent while the window was open, whenever it is answered,
+// so the slowest responses of the window are never left out
 public class SimultaneousJobsStats {
-    private final CountDownLatch startLatch;
-    private final AtomicBoolean oneJobFinished;
+    private final CyclicBarrier startBarrier;
     private final List<SingleSimultaneousJobStats> registeredJobs;
+    private volatile boolean isOpened = false;
+    private volatile boolean isMeasuring = false;
+    private volatile long windowStartNanos = 0;
+    private volatile long windowEndNanos = 0;
 
     public SimultaneousJobsStats(int jobsToStart) {
-        this.startLatch = new CountDownLatch(jobsToStart);
-        this.oneJobFinished = new AtomicBoolean(false);
+        this.startBarrier = new CyclicBarrier(jobsToStart, this::startMeasurement);
         this.registeredJobs = new ArrayList<>();
     }
 
@@ -24,48 +31,105 @@ public class SimultaneousJobsStats {
         return newJobStat;
     }
 
+    public void startMeasurement() {
+        windowStartNanos = System.nanoTime();
+        windowEndNanos = 0;
+        isMeasuring = true;
+        isOpened = true;
+    }
+
+    public void stopMeasurement() {
+        if (isMeasuring) {
+            windowEndNanos = System.nanoTime();
+            isMeasuring = false;
+        }
+    }
+
+    public long getWindowNanos() {
+        long windowEnd = isMeasuring ? System.nanoTime() : windowEndNanos;
+        return Math.max(0, windowEnd - windowStartNanos);
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (SingleSimultaneousJobStats job : registeredJobs) {
+            histogram.add(job.latencies);
+        }
+        return histogram;
+    }
+
     public long getAllJobsAverageStat() {
-        long runsSum = 0;
-        long runsCount = 0;
+        return (long) getLatencyHistogram().getMean();
+    }
+
+    public long getAllJobsRejected() {
+        long rejectedTotal = 0;
         for (SingleSimultaneousJobStats job : registeredJobs) {
-            runsSum += job.nanosTotal.get();
-            runsCount += job.runsTotal.get();
+            rejectedTotal += job.rejectedTotal.get();
         }
-        return runsSum / runsCount;
+        return rejectedTotal;
     }
 
-    public boolean isOneJobFinished() {
-        return oneJobFinished.get();
+    public long getAllJobsErrors() {
+        long errorsTotal = 0;
+        for (SingleSimultaneousJobStats job : registeredJobs) {
+            errorsTotal += job.errorsTotal.get();
+        }
+        return errorsTotal;
     }
 
-    public void setOneJobFinished() {
-        oneJobFinished.set(true);
+    // Answered requests per second of the measurement window
+    public double getThroughput() {
+        long windowNanos = getWindowNanos();
+        if (windowNanos == 0) {
+            return 0;
+        }
+        return getLatencyHistogram().getCount() / ((double) windowNanos / TimeUnit.SECONDS.toNanos(1));
     }
 
+    private boolean isMeasured(long requestStartNanos) {
+        return isOpened
+                && requestStartNanos >= windowStartNanos
+                && (isMeasuring || requestStartNanos <= windowEndNanos);
+    }
+
+    // Each job is recorded by its own thread, so recording never contends
     public class SingleSimultaneousJobStats {
-        private final AtomicLong nanosTotal;
-        private final AtomicInteger runsTotal;
+        private final LatencyHistogram latencies;
+        private final AtomicLong rejectedTotal;
+        private final AtomicLong errorsTotal;
 
         public SingleSimultaneousJobStats() {
-            this.nanosTotal = new AtomicLong(0);
-            runsTotal = new AtomicInteger(0);
+            this.latencies = new LatencyHistogram();
+            this.rejectedTotal = new AtomicLong(0);
+            this.errorsTotal = new AtomicLong(0);
         }
 
-        public void pushStat(long executionTime) {
-            if (isOneJobFinished()) {
-                return;
+        public void pushStat(long requestStartNanos, long executionTime) {
+            if (isMeasured(requestStartNanos)) {
+                latencies.record(executionTime);
             }
-            nanosTotal.addAndGet(executionTime);
-            runsTotal.incrementAndGet();
         }
 
-        public void start() throws InterruptedException {
-            startLatch.countDown();
-            startLatch.await();
+        // A request shed by the server is not a latency sample
+        public void pushRejected(long requestStartNanos) {
+            if (isMeasured(requestStartNanos)) {
+                rejectedTotal.incrementAndGet();
+            }
+        }
+
+        public void pushError(long requestStartNanos) {
+            if (isMeasured(requestStartNanos)) {
+                errorsTotal.incrementAndGet();
+            }
         }
 
-        public void finish() {
-            setOneJobFinished();
+        public void start() throws InterruptedException {
+            try {
+                startBarrier.await();
+            } catch (BrokenBarrierException e) {
+                throw new IllegalStateException("Some job failed to start", e);
+            }
         }
     }
 }
@@ -0,0 +1,54 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+public class BufferPool {
+    private static final int MIN_SIZE_CLASS_BITS = 6;
+
+    private final List<ArrayBlockingQueue<ByteBuffer>> sizeClasses = new ArrayList<>();
+    private final int maxPooledBufferSize;
+
+    public BufferPool(int maxPooledBufferSize, int buffersPerSizeClass) {
+        this.maxPooledBufferSize = maxPooledBufferSize;
+        if (buffersPerSizeClass > 0) {
+            for (int size = 1 << MIN_SIZE_CLASS_BITS; size <= maxPooledBufferSize; size <<= 1) {
+                sizeClasses.add(new ArrayBlockingQueue<>(buffersPerSizeClass));
+            }
+        }
+    }
+
+    public static BufferPool unpooled() {
+        return new BufferPool(0, 0);
+    }
+
+    public ByteBuffer acquire(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass >= sizeClasses.size()) {
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer buffer = sizeClasses.get(sizeClass).poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(1 << (sizeClass + MIN_SIZE_CLASS_BITS));
+        }
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() > maxPooledBufferSize || Integer.bitCount(buffer.capacity()) != 1) {
+            return;
+        }
+        int sizeClass = sizeClass(buffer.capacity());
+        if (sizeClass < sizeClasses.size()) {
+            sizeClasses.get(sizeClass).offer(buffer);
+        }
+    }
+
+    private static int sizeClass(int size) {
+        int bits = Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(0, bits - MIN_SIZE_CLASS_BITS);
+    }
+}
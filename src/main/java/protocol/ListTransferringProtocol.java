@@ -8,4 +8,8 @@ public interface ListTransferringProtocol {
     ByteBuffer encode(List<Integer> list);
 
     List<Integer> decode(ByteBuffer bytes) throws ProtocolException;
+
+    ByteBuffer encode(int[] array);
+
+    int[] decodeArray(ByteBuffer bytes) throws ProtocolException;
 }
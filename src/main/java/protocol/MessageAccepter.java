@@ -2,54 +2,132 @@ package protocol;
 
 import java.net.ProtocolException;
 import java.nio.ByteBuffer;
-import java.util.List;
 import java.util.Optional;
 
 public class MessageAccepter {
-    private static final int UNDEFINED_LENGTH = -1;
+    public static final int DEFAULT_MAX_MESSAGE_LENGTH = 64 * 1024 * 1024;
+    // A frame with this length and no body tells the client its request was shed by an overloaded server
+    public static final int BUSY_MESSAGE_LENGTH = -1;
+    // A frame with this length and no body tells the client the server failed to process its request
+    public static final int ERROR_MESSAGE_LENGTH = -2;
+    private static final int UNDEFINED_LENGTH = Integer.MIN_VALUE;
+    private static final ByteBuffer EMPTY_BODY = ByteBuffer.allocate(0).asReadOnlyBuffer();
 
     private final ByteBuffer messageLengthBuffer = ByteBuffer.allocate(Integer.BYTES);
     private ByteBuffer messageBodyBuffer = null;
+    private ByteBuffer acceptedBody = null;
     private int messageLength = UNDEFINED_LENGTH;
-    private List<Integer> acceptedList = null;
+    private int[] acceptedArray = null;
     private final ListTransferringProtocol protocol;
+    private final BufferPool bufferPool;
+    private final int maxMessageLength;
 
-    public MessageAccepter(ListTransferringProtocol protocol) {
+    public MessageAccepter(ListTransferringProtocol protocol, BufferPool bufferPool, int maxMessageLength) {
         this.protocol = protocol;
+        this.bufferPool = bufferPool;
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    public MessageAccepter(ListTransferringProtocol protocol) {
+        this(protocol, BufferPool.unpooled(), DEFAULT_MAX_MESSAGE_LENGTH);
     }
 
+    // Consumes bytes of at most one message, leaving the rest of readData untouched. An accepted body may be
+    // a view of readData, so it has to be used before readData is refilled
     public void accept(ByteBuffer readData) throws ProtocolException {
-        while (messageLengthBuffer.hasRemaining() && readData.hasRemaining()) {
-            messageLengthBuffer.put(readData.get());
+        if (acceptedBody != null) {
+            return;
         }
-        if (!messageLengthBuffer.hasRemaining() && messageLength == UNDEFINED_LENGTH) {
-            messageLengthBuffer.flip();
-            messageLength = messageLengthBuffer.getInt();
-            messageBodyBuffer = ByteBuffer.allocate(messageLength);
+        if (messageLength == UNDEFINED_LENGTH) {
+            if (messageLengthBuffer.position() == 0 && readData.remaining() >= Integer.BYTES) {
+                messageLength = readData.getInt();
+            } else {
+                copy(readData, messageLengthBuffer);
+                if (messageLengthBuffer.hasRemaining()) {
+                    return;
+                }
+                messageLengthBuffer.flip();
+                messageLength = messageLengthBuffer.getInt();
+            }
+            if (messageLength == BUSY_MESSAGE_LENGTH || messageLength == ERROR_MESSAGE_LENGTH) {
+                acceptedBody = EMPTY_BODY;
+                return;
+            }
+            if (messageLength < 0 || messageLength > maxMessageLength) {
+                throw new ProtocolException(String.format(
+                        "Message length %d is out of bounds [0, %d]", messageLength, maxMessageLength));
+            }
         }
-        if (messageBodyBuffer != null) {
-            while (messageBodyBuffer.hasRemaining() && readData.hasRemaining()) {
-                messageBodyBuffer.put(readData.get());
+        if (messageBodyBuffer == null) {
+            if (readData.remaining() >= messageLength) {
+                acceptedBody = readData.slice();
+                acceptedBody.limit(messageLength);
+                readData.position(readData.position() + messageLength);
+                return;
             }
+            messageBodyBuffer = bufferPool.acquire(messageLength);
         }
-        if (messageBodyBuffer == null || messageBodyBuffer.hasRemaining()) {
+        copy(readData, messageBodyBuffer);
+        if (messageBodyBuffer.hasRemaining()) {
             return;
         }
         messageBodyBuffer.flip();
-        acceptedList = protocol.decode(messageBodyBuffer);
+        acceptedBody = messageBodyBuffer;
+    }
+
+    public boolean isAccepted() {
+        return acceptedBody != null;
+    }
+
+    public boolean isBusy() {
+        return acceptedBody != null && messageLength == BUSY_MESSAGE_LENGTH;
+    }
+
+    public boolean isError() {
+        return acceptedBody != null && messageLength == ERROR_MESSAGE_LENGTH;
     }
 
-    public Optional<List<Integer>> accepted() {
-        return Optional.ofNullable(acceptedList);
+    // Empty for a busy or an error frame, they have no array
+    public Optional<int[]> accepted() throws ProtocolException {
+        if (acceptedArray == null && acceptedBody != null && !isBusy() && !isError()) {
+            acceptedArray = protocol.decodeArray(acceptedBody.duplicate());
+        }
+        return Optional.ofNullable(acceptedArray);
+    }
+
+    public Optional<ByteBuffer> acceptedBody() {
+        return Optional.ofNullable(acceptedBody).map(ByteBuffer::asReadOnlyBuffer);
     }
 
     public int getRemaining() {
         if (messageLength == UNDEFINED_LENGTH) {
             return messageLengthBuffer.remaining();
         }
-        if (acceptedList == null) {
-            return messageBodyBuffer.remaining();
+        if (acceptedBody != null) {
+            return 0;
+        }
+        if (messageBodyBuffer == null) {
+            return messageLength;
         }
-        return 0;
+        return messageBodyBuffer.remaining();
+    }
+
+    public void reset() {
+        if (messageBodyBuffer != null) {
+            bufferPool.release(messageBodyBuffer);
+            messageBodyBuffer = null;
+        }
+        messageLengthBuffer.clear();
+        messageLength = UNDEFINED_LENGTH;
+        acceptedBody = null;
+        acceptedArray = null;
+    }
+
+    private static void copy(ByteBuffer from, ByteBuffer to) {
+        int length = Math.min(from.remaining(), to.remaining());
+        ByteBuffer chunk = from.slice();
+        chunk.limit(length);
+        to.put(chunk);
+        from.position(from.position() + length);
     }
 }
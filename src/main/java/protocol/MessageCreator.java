@@ -1,27 +1,67 @@
 package protocol;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.List;
+import java.nio.channels.GatheringByteChannel;
 
 public class MessageCreator {
-    private final ByteBuffer messageBuffer;
+    private final ByteBuffer[] messageBuffers;
+    private Runnable writtenCallback = null;
 
-    public MessageCreator(List<Integer> array, ListTransferringProtocol protocol) {
-        ByteBuffer messageBodyBuffer = protocol.encode(array);
+    public MessageCreator(int[] array, ListTransferringProtocol protocol) {
+        this(protocol.encode(array));
+    }
+
+    // The body is shared, not copied: only a view of it is consumed by writes
+    public MessageCreator(ByteBuffer encodedBody) {
+        this(encodedBody.remaining(), encodedBody.slice());
+    }
+
+    private MessageCreator(int messageLength, ByteBuffer messageBodyBuffer) {
         ByteBuffer messageLengthBuffer = ByteBuffer.allocate(Integer.BYTES);
-        messageLengthBuffer.putInt(messageBodyBuffer.capacity());
+        messageLengthBuffer.putInt(messageLength);
         messageLengthBuffer.flip();
-        messageBuffer = ByteBuffer.allocate(messageLengthBuffer.capacity() + messageBodyBuffer.capacity());
-        while (messageLengthBuffer.hasRemaining()) {
-            messageBuffer.put(messageLengthBuffer.get());
-        }
-        while (messageBodyBuffer.hasRemaining()) {
-            messageBuffer.put(messageBodyBuffer.get());
+        messageBuffers = new ByteBuffer[]{messageLengthBuffer, messageBodyBuffer};
+    }
+
+    public static MessageCreator busy() {
+        return new MessageCreator(MessageAccepter.BUSY_MESSAGE_LENGTH, ByteBuffer.allocate(0));
+    }
+
+    public static MessageCreator error() {
+        return new MessageCreator(MessageAccepter.ERROR_MESSAGE_LENGTH, ByteBuffer.allocate(0));
+    }
+
+    // The same message from its start, sharing the body read-only, so one encoding can be sent many times
+    public MessageCreator duplicate() {
+        return new MessageCreator(messageBuffers[0].getInt(0), messageBuffers[1].asReadOnlyBuffer().rewind());
+    }
+
+    // The callback runs once the writer reports the whole message as written
+    public MessageCreator onWritten(Runnable callback) {
+        writtenCallback = callback;
+        return this;
+    }
+
+    public void notifyWritten() {
+        if (writtenCallback != null) {
+            writtenCallback.run();
         }
-        messageBuffer.flip();
     }
 
-    public ByteBuffer createdBuffer() {
-        return messageBuffer;
+    public ByteBuffer[] createdBuffers() {
+        return messageBuffers;
+    }
+
+    public int messageLength() {
+        return messageBuffers[0].capacity() + messageBuffers[1].capacity();
+    }
+
+    public boolean hasRemaining() {
+        return messageBuffers[0].hasRemaining() || messageBuffers[1].hasRemaining();
+    }
+
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        return channel.write(messageBuffers);
     }
 }
@@ -27,4 +27,22 @@ public class PrimitiveListTransferringProtocol implements ListTransferringProtoc
         }
         return ints;
     }
+
+    @Override
+    public ByteBuffer encode(int[] array) {
+        ByteBuffer bytes = ByteBuffer.allocate(array.length * Integer.BYTES);
+        bytes.asIntBuffer().put(array);
+        return bytes;
+    }
+
+    @Override
+    public int[] decodeArray(ByteBuffer bytes) throws ProtocolException {
+        if (bytes.remaining() % Integer.BYTES != 0) {
+            throw new ProtocolException("The length of the byte array is not divisible by the integer length");
+        }
+        int[] ints = new int[bytes.remaining() / Integer.BYTES];
+        bytes.asIntBuffer().get(ints);
+        bytes.position(bytes.limit());
+        return ints;
+    }
 }
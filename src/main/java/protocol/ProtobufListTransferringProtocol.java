@@ -18,10 +18,33 @@ public class ProtobufListTransferringProtocol implements ListTransferringProtoco
     @Override
     public List<Integer> decode(ByteBuffer bytes) throws ProtocolException {
         try {
-            var instance = ProtoList.parseFrom(bytes.array());
+            var instance = ProtoList.parseFrom(bytes);
             return instance.getIntsList();
         } catch (InvalidProtocolBufferException e) {
             throw new ProtocolException("Unable to parse bytes as protobuf list");
         }
     }
+
+    @Override
+    public ByteBuffer encode(int[] array) {
+        var builder = ProtoList.newBuilder();
+        for (int elem : array) {
+            builder.addInts(elem);
+        }
+        return ByteBuffer.wrap(builder.build().toByteArray());
+    }
+
+    @Override
+    public int[] decodeArray(ByteBuffer bytes) throws ProtocolException {
+        try {
+            var instance = ProtoList.parseFrom(bytes);
+            int[] ints = new int[instance.getIntsCount()];
+            for (int i = 0; i < ints.length; ++i) {
+                ints[i] = instance.getInts(i);
+            }
+            return ints;
+        } catch (InvalidProtocolBufferException e) {
+            throw new ProtocolException("Unable to parse bytes as protobuf list");
+        }
+    }
 }
@@ -1,35 +1,170 @@
 package server;
 
 import logger.ContextLogger;
+import protocol.BufferPool;
 import protocol.ListTransferringProtocol;
+import protocol.MessageAccepter;
+import protocol.MessageCreator;
+import sorting.ReferenceSortingEngine;
+import sorting.SortingEngine;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.*;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public abstract class ArraySortingServer implements Runnable, Closeable {
     protected final ContextLogger serverLogger;
     protected volatile boolean isRunning;
     private final ListTransferringProtocol protocol;
+    private final SortingEngine sortingEngine;
+    private final ServerSettings settings;
+    private final BufferPool bufferPool;
+    private final SortedResultCache resultCache;
+    private final StageLatencies stageLatencies;
     private final int port;
 
-    public ArraySortingServer(ListTransferringProtocol protocol, int port, boolean logInfo) {
+    public ArraySortingServer(ListTransferringProtocol protocol,
+                              SortingEngine sortingEngine,
+                              int port,
+                              ServerSettings settings,
+                              boolean logInfo) {
         this.serverLogger = new ContextLogger("Server", logInfo);
         this.port = port;
         this.isRunning = true;
         this.protocol = protocol;
+        this.sortingEngine = sortingEngine;
+        this.settings = settings;
+        this.bufferPool = new BufferPool(settings.getMaxPooledBufferSize(), settings.getPooledBuffersPerSizeClass());
+        this.resultCache = settings.getResultCacheSize() > 0 ? new SortedResultCache(settings.getResultCacheSize()) : null;
+        this.stageLatencies = settings.isStageTracing() ? new StageLatencies() : null;
+    }
+
+    public ArraySortingServer(ListTransferringProtocol protocol,
+                              SortingEngine sortingEngine,
+                              int port,
+                              boolean logInfo) {
+        this(protocol, sortingEngine, port, ServerSettings.DEFAULT, logInfo);
+    }
+
+    public ArraySortingServer(ListTransferringProtocol protocol, int port, boolean logInfo) {
+        this(protocol, new ReferenceSortingEngine(), port, logInfo);
     }
 
     public abstract void awaitServed();
 
-    protected void sortArray(List<Integer> ints) {
-        for (int i = 0; i < ints.size(); ++i) {
-            for (int j = i + 1; j < ints.size(); ++j) {
-                if (ints.get(i) > ints.get(j)) {
-                    Collections.swap(ints, i, j);
-                }
+    protected void sortArray(int[] array) {
+        sortingEngine.sort(array);
+    }
+
+    // Schedules the response to the accepted message on the connection's sequencer. The accepter may be reset
+    // as soon as this returns. A request shed by the task executor is answered with a busy frame, a request
+    // the server failed to process with an error frame
+    protected void handleRequest(MessageAccepter accepter,
+                                 ResponseSequencer responseSequencer,
+                                 Executor taskExecutor,
+                                 RequestTrace trace) throws ProtocolException {
+        if (accepter.isBusy() || accepter.isError()) {
+            throw new ProtocolException("Busy and error frames are only sent by the server");
+        }
+        trace.mark(StageLatencies.Stage.READ);
+        long sequenceNumber = responseSequencer.nextSequenceNumber();
+        Runnable rejection = () -> responseSequencer.complete(sequenceNumber, MessageCreator.busy());
+        if (resultCache == null) {
+            int[] array = accepter.accepted().orElseThrow();
+            trace.mark(StageLatencies.Stage.DECODE);
+            taskExecutor.execute(new ClientTask(
+                    responseSequencer,
+                    array.length,
+                    () -> {
+                        // The sequence number is completed whatever happens, otherwise every later response
+                        // of the connection would wait for it
+                        MessageCreator response;
+                        try {
+                            trace.mark(StageLatencies.Stage.QUEUE);
+                            sortArray(array);
+                            trace.mark(StageLatencies.Stage.SORT);
+                            response = new MessageCreator(array, protocol);
+                            trace.mark(StageLatencies.Stage.ENCODE);
+                            response.onWritten(trace::finish);
+                        } catch (Throwable e) {
+                            serverLogger.handleException(e);
+                            response = MessageCreator.error();
+                        }
+                        responseSequencer.complete(sequenceNumber, response);
+                    },
+                    rejection));
+            return;
+        }
+
+        SortedResultCache.Ticket ticket = resultCache.lookup(accepter.acceptedBody().orElseThrow());
+        ticket.response().whenComplete((response, e) -> {
+            if (e == null) {
+                responseSequencer.complete(sequenceNumber, new MessageCreator(response).onWritten(trace::finish));
+                return;
+            }
+            if (e instanceof RejectedExecutionException) {
+                rejection.run();
+                return;
             }
+            serverLogger.handleException(e);
+            responseSequencer.complete(sequenceNumber, MessageCreator.error());
+        });
+        if (!ticket.isLeader()) {
+            return;
         }
+        try {
+            int[] array = accepter.accepted().orElseThrow();
+            trace.mark(StageLatencies.Stage.DECODE);
+            taskExecutor.execute(new ClientTask(
+                    responseSequencer,
+                    array.length,
+                    () -> {
+                        try {
+                            trace.mark(StageLatencies.Stage.QUEUE);
+                            sortArray(array);
+                            trace.mark(StageLatencies.Stage.SORT);
+                            ByteBuffer response = protocol.encode(array);
+                            trace.mark(StageLatencies.Stage.ENCODE);
+                            ticket.complete(response);
+                        } catch (Throwable e) {
+                            // Logged and answered with an error frame by every request waiting on the ticket
+                            ticket.fail(e);
+                        }
+                    },
+                    () -> ticket.fail(new RejectedExecutionException("Request was shed"))));
+        } catch (ProtocolException | RuntimeException e) {
+            ticket.fail(e);
+            throw e;
+        }
+    }
+
+    // The trace of a request whose first bytes were read at readStartNanos
+    protected RequestTrace startTrace(long readStartNanos) {
+        return stageLatencies == null ? RequestTrace.DISABLED : new RequestTrace(stageLatencies, readStartNanos);
+    }
+
+    // Clock reading of the read loops, taken only while stages are traced
+    protected long readClock() {
+        return stageLatencies == null ? 0 : System.nanoTime();
+    }
+
+    public abstract ClientTaskExecutor getClientTaskExecutor();
+
+    public Optional<SortedResultCache> getResultCache() {
+        return Optional.ofNullable(resultCache);
+    }
+
+    public Optional<StageLatencies> getStageLatencies() {
+        return Optional.ofNullable(stageLatencies);
+    }
+
+    // Whether connections or requests are actually served by virtual threads, not a platform thread fallback
+    public boolean isUsingVirtualThreads() {
+        return false;
     }
 
     public boolean running() {
@@ -44,9 +179,22 @@ public abstract class ArraySortingServer implements Runnable, Closeable {
         return protocol;
     }
 
+    public SortingEngine getSortingEngine() {
+        return sortingEngine;
+    }
+
+    public ServerSettings getSettings() {
+        return settings;
+    }
+
+    protected MessageAccepter makeMessageAccepter() {
+        return new MessageAccepter(protocol, bufferPool, settings.getMaxMessageLength());
+    }
+
     @Override
     public void close() throws IOException {
         isRunning = false;
+        sortingEngine.close();
     }
 
     @Override
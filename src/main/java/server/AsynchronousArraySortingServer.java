@@ -0,0 +1,257 @@
+package server;
+
+import logger.ContextLogger;
+import protocol.ListTransferringProtocol;
+import protocol.MessageAccepter;
+import protocol.MessageCreator;
+import protocol.PrimitiveListTransferringProtocol;
+import sorting.ReferenceSortingEngine;
+import sorting.SortingEngine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class AsynchronousArraySortingServer extends ArraySortingServer {
+    private final Set<AsynchronousClientHandler> clients = ConcurrentHashMap.newKeySet();
+    private final ClientTaskExecutor clientTaskExecutor;
+    private final CountDownLatch serverServed = new CountDownLatch(1);
+    private final boolean logInfo;
+    private volatile AsynchronousChannelGroup channelGroup;
+    private volatile AsynchronousServerSocketChannel serverSocket;
+
+    public AsynchronousArraySortingServer(ListTransferringProtocol protocol,
+                                          SortingEngine sortingEngine,
+                                          int port,
+                                          ServerSettings settings,
+                                          boolean logInfo) {
+        super(protocol, sortingEngine, port, settings, logInfo);
+        this.clientTaskExecutor = new ClientTaskExecutor(settings);
+        this.logInfo = logInfo;
+    }
+
+    public AsynchronousArraySortingServer(ListTransferringProtocol protocol,
+                                          SortingEngine sortingEngine,
+                                          int port,
+                                          boolean logInfo) {
+        this(protocol, sortingEngine, port, ServerSettings.DEFAULT, logInfo);
+    }
+
+    public AsynchronousArraySortingServer(ListTransferringProtocol protocol, int port, boolean logInfo) {
+        this(protocol, new ReferenceSortingEngine(), port, logInfo);
+    }
+
+    public static void main(String[] args) {
+        ArraySortingServer server = new AsynchronousArraySortingServer(
+                new PrimitiveListTransferringProtocol(),
+                8000,
+                false
+        );
+        server.run();
+    }
+
+    @Override
+    public void run() {
+        super.run();
+        serverLogger.info("Running");
+        try {
+            channelGroup = AsynchronousChannelGroup.withFixedThreadPool(
+                    getSettings().getChannelGroupThreads(),
+                    Executors.defaultThreadFactory());
+            serverSocket = AsynchronousServerSocketChannel.open(channelGroup);
+            serverSocket.bind(new InetSocketAddress(getPort()), getSettings().getAcceptBacklog());
+            serverLogger.info("Bound to port");
+            serverServed.countDown();
+            serverSocket.accept(null, new ClientAcceptingHandler());
+            channelGroup.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException ignored) {
+            serverLogger.info("Server interrupted");
+            try {
+                close();
+            } catch (IOException e) {
+                serverLogger.handleException(e);
+            }
+        } catch (IOException e) {
+            serverLogger.handleException(e);
+        }
+    }
+
+    @Override
+    public ClientTaskExecutor getClientTaskExecutor() {
+        return clientTaskExecutor;
+    }
+
+    @Override
+    public void awaitServed() {
+        try {
+            serverServed.await();
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverLogger.info("Closing");
+        super.close();
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (AsynchronousClientHandler client : clients) {
+            client.close();
+        }
+        clientTaskExecutor.shutdownNow();
+        try {
+            if (!clientTaskExecutor.awaitTermination(2, TimeUnit.SECONDS)) {
+                throw new RuntimeException("Client task executor won't close");
+            }
+        } catch (InterruptedException ignored) {
+        }
+        if (channelGroup != null) {
+            channelGroup.shutdownNow();
+        }
+        serverLogger.info("Closed");
+    }
+
+    private class ClientAcceptingHandler implements CompletionHandler<AsynchronousSocketChannel, Void> {
+        @Override
+        public void completed(AsynchronousSocketChannel socket, Void attachment) {
+            serverSocket.accept(null, this);
+            AsynchronousClientHandler client = new AsynchronousClientHandler(socket, logInfo);
+            clients.add(client);
+            client.read();
+        }
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            if (running()) {
+                serverLogger.handleException(e);
+            }
+        }
+    }
+
+    private class AsynchronousClientHandler {
+        private final AsynchronousSocketChannel socket;
+        private final ContextLogger handlerLogger;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(getSettings().getReadBufferSize());
+        private final MessageAccepter messageAccepter = makeMessageAccepter();
+        // Clock reading of the read that brought the first bytes of the message being accepted
+        private boolean isMessageStarted = false;
+        private long messageReadStartNanos = 0;
+        private final Queue<MessageCreator> toSendQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean isWriting = new AtomicBoolean(false);
+        private final ResponseSequencer responseSequencer = new ResponseSequencer(this::addMessageToSend);
+        private final ReadingHandler readingHandler = new ReadingHandler();
+        private final WritingHandler writingHandler = new WritingHandler();
+
+        private AsynchronousClientHandler(AsynchronousSocketChannel socket, boolean logInfo) {
+            this.socket = socket;
+            this.handlerLogger = new ContextLogger("ClientHandler", logInfo);
+        }
+
+        public void read() {
+            socket.read(readBuffer, null, readingHandler);
+        }
+
+        public void addMessageToSend(MessageCreator message) {
+            toSendQueue.add(message);
+            if (isWriting.compareAndSet(false, true)) {
+                writeNext();
+            }
+        }
+
+        // Only one write may be pending on an asynchronous channel, the isWriting flag owns that right
+        private void writeNext() {
+            MessageCreator message = toSendQueue.peek();
+            if (message == null) {
+                isWriting.set(false);
+                if (!toSendQueue.isEmpty() && isWriting.compareAndSet(false, true)) {
+                    writeNext();
+                }
+                return;
+            }
+            ByteBuffer[] buffers = message.createdBuffers();
+            socket.write(buffers, 0, buffers.length, 0, TimeUnit.MILLISECONDS, message, writingHandler);
+        }
+
+        public void close() {
+            clients.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                handlerLogger.handleException(e);
+            }
+        }
+
+        private class ReadingHandler implements CompletionHandler<Integer, Void> {
+            @Override
+            public void completed(Integer bytesRead, Void attachment) {
+                if (bytesRead < 0) {
+                    close();
+                    return;
+                }
+                long readNanos = readClock();
+                readBuffer.flip();
+                try {
+                    while (readBuffer.hasRemaining()) {
+                        if (!isMessageStarted) {
+                            messageReadStartNanos = readNanos;
+                            isMessageStarted = true;
+                        }
+                        messageAccepter.accept(readBuffer);
+                        if (messageAccepter.isAccepted()) {
+                            handleRequest(messageAccepter, responseSequencer, clientTaskExecutor,
+                                    startTrace(messageReadStartNanos));
+                            messageAccepter.reset();
+                            isMessageStarted = false;
+                        }
+                    }
+                } catch (IOException e) {
+                    handlerLogger.handleException(e);
+                    close();
+                    return;
+                }
+                readBuffer.clear();
+                read();
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                if (running()) {
+                    handlerLogger.handleException(e);
+                }
+                close();
+            }
+        }
+
+        private class WritingHandler implements CompletionHandler<Long, MessageCreator> {
+            @Override
+            public void completed(Long bytesWritten, MessageCreator message) {
+                if (!message.hasRemaining()) {
+                    toSendQueue.poll();
+                    message.notifyWritten();
+                }
+                writeNext();
+            }
+
+            @Override
+            public void failed(Throwable e, MessageCreator message) {
+                if (running()) {
+                    handlerLogger.handleException(e);
+                }
+                close();
+            }
+        }
+    }
+}
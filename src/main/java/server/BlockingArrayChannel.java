@@ -0,0 +1,67 @@
+package server;
+
+import protocol.MessageAccepter;
+import protocol.MessageCreator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.function.LongSupplier;
+
+class BlockingArrayChannel {
+    private final SocketChannel socket;
+    private final MessageAccepter messageAccepter;
+    private final ByteBuffer readBuffer;
+    private final LongSupplier readClock;
+    private long lastReadNanos = 0;
+    private long messageReadStartNanos = 0;
+
+    BlockingArrayChannel(SocketChannel socket,
+                         MessageAccepter messageAccepter,
+                         int readBufferSize,
+                         LongSupplier readClock) {
+        this.socket = socket;
+        this.messageAccepter = messageAccepter;
+        this.readBuffer = ByteBuffer.allocateDirect(readBufferSize).flip();
+        this.readClock = readClock;
+    }
+
+    // Returns the accepter holding the next message, or null on end of stream. The caller resets the accepter
+    public MessageAccepter readMessage() throws IOException {
+        // Bytes left in the buffer arrived with the last read
+        boolean isStarted = readBuffer.hasRemaining();
+        messageReadStartNanos = lastReadNanos;
+        while (!messageAccepter.isAccepted()) {
+            if (!readBuffer.hasRemaining()) {
+                readBuffer.clear();
+                int bytesRead = socket.read(readBuffer);
+                lastReadNanos = readClock.getAsLong();
+                readBuffer.flip();
+                if (bytesRead < 0) {
+                    return null;
+                }
+                if (!isStarted) {
+                    messageReadStartNanos = lastReadNanos;
+                    isStarted = true;
+                }
+            }
+            messageAccepter.accept(readBuffer);
+        }
+        return messageAccepter;
+    }
+
+    // Clock reading of the socket read that brought the first bytes of the last message
+    public long getMessageReadStartNanos() {
+        return messageReadStartNanos;
+    }
+
+    public void writeMessage(MessageCreator creator) throws IOException {
+        while (creator.hasRemaining()) {
+            long bytesWritten = creator.writeTo(socket);
+            if (bytesWritten < 0) {
+                throw new IOException("Server couldn't send an array");
+            }
+        }
+        creator.notifyWritten();
+    }
+}
@@ -4,23 +4,39 @@ import protocol.ListTransferringProtocol;
 import protocol.MessageAccepter;
 import protocol.MessageCreator;
 import protocol.PrimitiveListTransferringProtocol;
+import sorting.ReferenceSortingEngine;
+import sorting.SortingEngine;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 public class BlockingArraySortingServer extends ClientAcceptingServer {
     private final boolean logInfo;
 
-    public BlockingArraySortingServer(ListTransferringProtocol protocol, int port, boolean logInfo) {
-        super(protocol, port, logInfo);
+    public BlockingArraySortingServer(ListTransferringProtocol protocol,
+                                      SortingEngine sortingEngine,
+                                      int port,
+                                      ServerSettings settings,
+                                      boolean logInfo) {
+        super(protocol, sortingEngine, port, settings, logInfo);
         this.logInfo = logInfo;
     }
 
+    public BlockingArraySortingServer(ListTransferringProtocol protocol,
+                                      SortingEngine sortingEngine,
+                                      int port,
+                                      boolean logInfo) {
+        this(protocol, sortingEngine, port, ServerSettings.DEFAULT, logInfo);
+    }
+
+    public BlockingArraySortingServer(ListTransferringProtocol protocol, int port, boolean logInfo) {
+        this(protocol, new ReferenceSortingEngine(), port, logInfo);
+    }
+
     public static void main(String[] args) {
         ArraySortingServer server = new BlockingArraySortingServer(
                 new PrimitiveListTransferringProtocol(),
@@ -38,10 +54,17 @@ public class BlockingArraySortingServer extends ClientAcceptingServer {
     private class BlockingClientHandler extends ClientHandler {
         private final ExecutorService reader = Executors.newSingleThreadExecutor();
         private final ExecutorService writer = Executors.newSingleThreadExecutor();
+        private final BlockingArrayChannel arrayChannel;
+        private final ResponseSequencer responseSequencer = new ResponseSequencer(this::sendMessage);
         private volatile boolean isWorking = true;
 
         protected BlockingClientHandler(SocketChannel socket, boolean logInfo) {
             super(socket, logInfo);
+            this.arrayChannel = new BlockingArrayChannel(
+                    socket,
+                    makeMessageAccepter(),
+                    getSettings().getReadBufferSize(),
+                    BlockingArraySortingServer.this::readClock);
         }
 
         @Override
@@ -65,62 +88,57 @@ public class BlockingArraySortingServer extends ClientAcceptingServer {
         public void handle() {
             reader.submit(() -> {
                 while (isWorking) {
-                    List<Integer> clientArray;
                     try {
-                        clientArray = readArray();
-                        if (clientArray == null) {
+                        MessageAccepter message = readMessage();
+                        if (message == null) {
                             isWorking = false;
                             break;
                         }
+                        handleRequest(message, responseSequencer, BlockingArraySortingServer.this::submitClientTask,
+                                startTrace(arrayChannel.getMessageReadStartNanos()));
+                        message.reset();
                     } catch (IOException e) {
+                        handlerLogger.handleException(e);
                         isWorking = false;
                         break;
                     }
-                    submitClientTask(() -> {
-                        sortArray(clientArray);
-                        writer.submit(() -> {
-                            try {
-                                writeArray(clientArray);
-                            } catch (IOException e) {
-                                handlerLogger.handleException(e);
-                            }
-                        });
-                    });
                 }
+                disconnect();
             });
         }
 
-        private List<Integer> readArray() throws IOException {
-            MessageAccepter accepter = new MessageAccepter(getProtocol());
-            handlerLogger.info(String.format("Reading array from %s", socket.getLocalAddress()));
-            while (accepter.getRemaining() != 0) {
-                ByteBuffer anotherPart = ByteBuffer.allocate(accepter.getRemaining());
-                while (anotherPart.hasRemaining()) {
-                    int bytesRead = socket.read(anotherPart);
-                    if (bytesRead < 0) {
-                        return null;
-                    }
-                }
-                anotherPart.flip();
-                accepter.accept(anotherPart);
-            }
-            if (accepter.accepted().isEmpty()) {
-                throw new RuntimeException("Server didn't receive all array");
+        private void disconnect() {
+            handlerLogger.info("Disconnecting");
+            reader.shutdown();
+            writer.shutdown();
+            try {
+                super.close();
+            } catch (IOException e) {
+                handlerLogger.handleException(e);
             }
+        }
+
+        private MessageAccepter readMessage() throws IOException {
+            handlerLogger.info(String.format("Reading array from %s", socket.getLocalAddress()));
+            MessageAccepter message = arrayChannel.readMessage();
             handlerLogger.info("Read array");
-            return accepter.accepted().get();
+            return message;
         }
 
-        private void writeArray(List<Integer> array) throws IOException {
-            handlerLogger.info("Writing array");
-            MessageCreator creator = new MessageCreator(array, getProtocol());
-            while (creator.createdBuffer().hasRemaining()) {
-                int bytesWritten = socket.write(creator.createdBuffer());
-                if (bytesWritten < 0) {
-                    throw new IOException("Server couldn't send an array");
-                }
+        private void sendMessage(MessageCreator message) {
+            try {
+                writer.submit(() -> {
+                    try {
+                        handlerLogger.info("Writing array");
+                        arrayChannel.writeMessage(message);
+                        handlerLogger.info("Array is written");
+                    } catch (IOException e) {
+                        handlerLogger.handleException(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                handlerLogger.info("Client disconnected before the array was written");
             }
-            handlerLogger.info("Array is written");
         }
     }
 }
@@ -2,45 +2,72 @@ package server;
 
 import logger.ContextLogger;
 import protocol.ListTransferringProtocol;
+import sorting.ReferenceSortingEngine;
+import sorting.SortingEngine;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class ClientAcceptingServer extends ArraySortingServer {
-    private final List<ClientHandler> clients;
-    private final ExecutorService clientTaskExecutor;
+    private final Set<ClientHandler> clients;
+    private final ClientTaskExecutor clientTaskExecutor;
     private final Lock serverServeLock = new ReentrantLock();
     private final Condition serverServed = serverServeLock.newCondition();
     private boolean isServerServed = false;
 
     public ClientAcceptingServer(ListTransferringProtocol protocol,
+                                 SortingEngine sortingEngine,
+                                 int port,
+                                 ServerSettings settings,
+                                 boolean logInfo) {
+        super(protocol, sortingEngine, port, settings, logInfo);
+        this.clients = ConcurrentHashMap.newKeySet();
+        this.clientTaskExecutor = new ClientTaskExecutor(settings);
+    }
+
+    public ClientAcceptingServer(ListTransferringProtocol protocol,
+                                 SortingEngine sortingEngine,
                                  int port,
                                  int taskExecutorThreads,
                                  boolean logInfo) {
-        super(protocol, port, logInfo);
-        this.clients = new ArrayList<>();
-        this.clientTaskExecutor = Executors.newFixedThreadPool(taskExecutorThreads);
+        this(protocol,
+                sortingEngine,
+                port,
+                ServerSettings.DEFAULT.withTaskExecutorThreads(taskExecutorThreads),
+                logInfo);
     }
 
     public ClientAcceptingServer(ListTransferringProtocol protocol,
+                                 SortingEngine sortingEngine,
                                  int port,
                                  boolean logInfo) {
-        this(protocol, port, Runtime.getRuntime().availableProcessors(), logInfo);
+        this(protocol, sortingEngine, port, ServerSettings.DEFAULT, logInfo);
+    }
+
+    public ClientAcceptingServer(ListTransferringProtocol protocol,
+                                 int port,
+                                 boolean logInfo) {
+        this(protocol, new ReferenceSortingEngine(), port, logInfo);
     }
 
     public void submitClientTask(Runnable task) {
-        clientTaskExecutor.submit(task);
+        clientTaskExecutor.execute(task);
+    }
+
+    @Override
+    public ClientTaskExecutor getClientTaskExecutor() {
+        return clientTaskExecutor;
     }
 
     protected abstract ClientHandler makeClientHandler(SocketChannel channel);
@@ -50,7 +77,7 @@ public abstract class ClientAcceptingServer extends ArraySortingServer {
         super.run();
         serverLogger.info("Running");
         try (ServerSocketChannel serverSocket = ServerSocketChannel.open()) {
-            serverSocket.bind(new InetSocketAddress(getPort()));
+            serverSocket.bind(new InetSocketAddress(getPort()), getSettings().getAcceptBacklog());
             serverLogger.info("Bound to port");
             serverServeLock.lock();
             try {
@@ -59,22 +86,66 @@ public abstract class ClientAcceptingServer extends ArraySortingServer {
             } finally {
                 serverServeLock.unlock();
             }
+            switch (getSettings().getAcceptMode()) {
+                case BLOCKING:
+                    acceptBlocking(serverSocket);
+                    break;
+                case SELECTOR:
+                    acceptWithSelector(serverSocket);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected accept mode: " + getSettings().getAcceptMode());
+            }
+        } catch (IOException e) {
+            serverLogger.handleException(e);
+        }
+    }
+
+    private void acceptBlocking(ServerSocketChannel serverSocket) throws IOException {
+        while (running()) {
+            try {
+                clientConnected(serverSocket.accept());
+            } catch (ClosedByInterruptException ignored) {
+                serverLogger.info("Server interrupted");
+                close();
+            }
+        }
+    }
+
+    private void acceptWithSelector(ServerSocketChannel serverSocket) throws IOException {
+        serverSocket.configureBlocking(false);
+        try (Selector acceptSelector = Selector.open()) {
+            serverSocket.register(acceptSelector, SelectionKey.OP_ACCEPT);
             while (running()) {
-                try {
-                    ClientHandler handler = makeClientHandler(serverSocket.accept());
-                    serverLogger.info(String.format("Client connected: %s", handler.socket.getRemoteAddress()));
-                    clients.add(handler);
-                    handler.handle();
-                } catch (ClosedByInterruptException ignored) {
+                acceptSelector.select();
+                if (Thread.interrupted()) {
                     serverLogger.info("Server interrupted");
                     close();
+                    break;
+                }
+                acceptSelector.selectedKeys().clear();
+                for (int accepted = 0; accepted < getSettings().getAcceptBatchSize(); ++accepted) {
+                    SocketChannel socket = serverSocket.accept();
+                    if (socket == null) {
+                        break;
+                    }
+                    clientConnected(socket);
                 }
             }
-        } catch (IOException e) {
-            serverLogger.handleException(e);
         }
     }
 
+    private void clientConnected(SocketChannel socket) throws IOException {
+        ClientHandler handler = makeClientHandler(socket);
+        serverLogger.info(String.format("Client connected: %s", handler.socket.getRemoteAddress()));
+        clients.add(handler);
+        handler.handle();
+    }
+
+    public int connectedClientsTotal() {
+        return clients.size();
+    }
+
     @Override
     public void awaitServed() {
         serverServeLock.lock();
@@ -105,7 +176,7 @@ public abstract class ClientAcceptingServer extends ArraySortingServer {
         serverLogger.info("Closed");
     }
 
-    public abstract static class ClientHandler {
+    public abstract class ClientHandler {
         protected final SocketChannel socket;
         protected final ContextLogger handlerLogger;
 
@@ -117,7 +188,13 @@ public abstract class ClientAcceptingServer extends ArraySortingServer {
         public abstract void handle();
 
         public void close() throws IOException {
+            clients.remove(this);
             socket.close();
         }
     }
+
+    public enum AcceptMode {
+        BLOCKING,
+        SELECTOR
+    }
 }
@@ -0,0 +1,34 @@
+package server;
+
+// A request of one client. When the server is overloaded it is rejected instead of run, and the client is told so
+public class ClientTask implements Runnable {
+    private final Object client;
+    private final long size;
+    private final Runnable work;
+    private final Runnable rejection;
+
+    // Size is the amount of work the task does, the length of the array to sort
+    public ClientTask(Object client, long size, Runnable work, Runnable rejection) {
+        this.client = client;
+        this.size = size;
+        this.work = work;
+        this.rejection = rejection;
+    }
+
+    public Object getClient() {
+        return client;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public void run() {
+        work.run();
+    }
+
+    public void reject() {
+        rejection.run();
+    }
+}
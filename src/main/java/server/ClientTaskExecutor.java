@@ -0,0 +1,143 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed pool of workers for client tasks. The queue orders tasks by the scheduling policy, and once it is full
+// a task is shed according to the admission policy: the shed ClientTask answers its client with a busy frame.
+// Dropping the oldest task means dropping the head of the queue, the next one in the scheduling order. Only FIFO
+// makes that the longest waiting task: round robin drops the next client's task, and shortest job first drops
+// the shortest (or the most aged) one
+public class ClientTaskExecutor extends ThreadPoolExecutor {
+    private final AdmissionPolicy admissionPolicy;
+    private final int perClientTaskLimit;
+    private final Map<Object, Integer> clientTasks = new ConcurrentHashMap<>();
+    private final LongAdder rejectedTasks = new LongAdder();
+    private final LongAdder droppedTasks = new LongAdder();
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+
+    public ClientTaskExecutor(ServerSettings settings) {
+        super(settings.getTaskExecutorThreads(),
+                settings.getTaskExecutorThreads(),
+                0L,
+                TimeUnit.MILLISECONDS,
+                makeQueue(settings));
+        this.admissionPolicy = settings.getAdmissionPolicy();
+        this.perClientTaskLimit = settings.getPerClientTaskLimit();
+        setRejectedExecutionHandler((task, executor) -> onQueueFull(task));
+    }
+
+    private static BlockingQueue<Runnable> makeQueue(ServerSettings settings) {
+        boolean isUnbounded = settings.getAdmissionPolicy() == AdmissionPolicy.UNBOUNDED;
+        int capacity = isUnbounded ? Integer.MAX_VALUE : settings.getTaskQueueCapacity();
+        switch (settings.getScheduling()) {
+            case FIFO:
+                return isUnbounded ? new LinkedBlockingQueue<>() : new ArrayBlockingQueue<>(capacity);
+            case ROUND_ROBIN:
+                return new RoundRobinTaskQueue(capacity);
+            case SHORTEST_JOB_FIRST:
+                return new ShortestJobFirstTaskQueue(capacity, settings.getAgingNanosPerElement());
+            default:
+                throw new IllegalStateException("Unexpected scheduling: " + settings.getScheduling());
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (admissionPolicy == AdmissionPolicy.PER_CLIENT && task instanceof ClientTask) {
+            ClientTask clientTask = (ClientTask) task;
+            Object client = clientTask.getClient();
+            if (clientTasks.merge(client, 1, Integer::sum) > perClientTaskLimit) {
+                releaseClientTask(client);
+                reject(clientTask);
+                return;
+            }
+            task = new ClientTask(
+                    client,
+                    clientTask.getSize(),
+                    () -> {
+                        try {
+                            clientTask.run();
+                        } finally {
+                            releaseClientTask(client);
+                        }
+                    },
+                    () -> {
+                        releaseClientTask(client);
+                        clientTask.reject();
+                    });
+        }
+        super.execute(task);
+        maxQueueDepth.accumulate(getQueue().size());
+    }
+
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    // The deepest the queue got right after a task was submitted, since the executor started or the last reset
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public void resetMaxQueueDepth() {
+        maxQueueDepth.reset();
+    }
+
+    public long getRejectedTasks() {
+        return rejectedTasks.sum();
+    }
+
+    public long getDroppedTasks() {
+        return droppedTasks.sum();
+    }
+
+    private void releaseClientTask(Object client) {
+        clientTasks.computeIfPresent(client, (key, tasks) -> tasks == 1 ? null : tasks - 1);
+    }
+
+    private void onQueueFull(Runnable task) {
+        if (isShutdown()) {
+            throw new RejectedExecutionException("Client task executor is shut down");
+        }
+        if (admissionPolicy == AdmissionPolicy.DROP_OLDEST) {
+            Runnable oldestTask = getQueue().poll();
+            if (oldestTask != null) {
+                droppedTasks.increment();
+                reject(oldestTask);
+            }
+            super.execute(task);
+            return;
+        }
+        reject(task);
+    }
+
+    private void reject(Runnable task) {
+        if (!(task instanceof ClientTask)) {
+            throw new RejectedExecutionException("Client task queue is full");
+        }
+        rejectedTasks.increment();
+        ((ClientTask) task).reject();
+    }
+
+    public enum Scheduling {
+        FIFO,
+        ROUND_ROBIN,
+        SHORTEST_JOB_FIRST
+    }
+
+    public enum AdmissionPolicy {
+        UNBOUNDED,
+        REJECT,
+        DROP_OLDEST,
+        PER_CLIENT
+    }
+}
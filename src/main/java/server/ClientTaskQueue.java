@@ -0,0 +1,219 @@
+package server;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded blocking queue of the client task executor whose order is decided by a scheduling policy.
+// Subclasses only order the tasks, every call to them is made under the queue lock
+abstract class ClientTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+    private final int capacity;
+    private final Lock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int size = 0;
+
+    protected ClientTaskQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    protected abstract void enqueue(Runnable task);
+
+    // Called only when the queue is not empty
+    protected abstract Runnable dequeue();
+
+    protected abstract Runnable head();
+
+    protected abstract boolean removeTask(Object task);
+
+    protected abstract List<Runnable> tasks();
+
+    protected static Object clientOf(Runnable task) {
+        return task instanceof ClientTask ? ((ClientTask) task).getClient() : ClientTaskQueue.class;
+    }
+
+    protected static long sizeOf(Runnable task) {
+        return task instanceof ClientTask ? ((ClientTask) task).getSize() : 0;
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        lock.lock();
+        try {
+            if (size == capacity) {
+                return false;
+            }
+            insert(task);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            insert(task);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable task) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == capacity) {
+                notFull.await();
+            }
+            insert(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return size == 0 ? null : next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return size == 0 ? null : head();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        lock.lock();
+        try {
+            if (!removeTask(task)) {
+                return false;
+            }
+            --size;
+            notFull.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> collection, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (size > 0 && drained < maxElements) {
+                collection.add(next());
+                ++drained;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Iterates over a snapshot, so it never fails on concurrent modification
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            return new ArrayList<>(tasks()).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void insert(Runnable task) {
+        enqueue(task);
+        ++size;
+        notEmpty.signal();
+    }
+
+    private Runnable next() {
+        Runnable task = dequeue();
+        --size;
+        notFull.signal();
+        return task;
+    }
+}
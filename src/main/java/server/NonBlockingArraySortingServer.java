@@ -5,20 +5,26 @@ import protocol.ListTransferringProtocol;
 import protocol.MessageAccepter;
 import protocol.MessageCreator;
 import protocol.PrimitiveListTransferringProtocol;
+import sorting.ReferenceSortingEngine;
+import sorting.SortingEngine;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.net.ProtocolException;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NonBlockingArraySortingServer extends ClientAcceptingServer {
-    private final ReadingSelectorHolder readingSelector = new ReadingSelectorHolder();
-    private final WritingSelectorHolder writingSelector = new WritingSelectorHolder();
-    private final ExecutorService selectorRunners = Executors.newFixedThreadPool(2);
+    private static final int MAX_GATHERED_BUFFERS = 128;
+
+    private final List<SelectorLoop> selectorLoops = new ArrayList<>();
+    private final ExecutorService selectorRunners;
+    private final AtomicInteger nextSelectorLoop = new AtomicInteger(0);
     private final boolean logInfo;
 
     public static void main(String[] args) {
@@ -33,22 +39,42 @@ public class NonBlockingArraySortingServer extends ClientAcceptingServer {
         }
     }
 
-    public NonBlockingArraySortingServer(ListTransferringProtocol protocol, int port, boolean logInfo) {
-        super(protocol, port, logInfo);
-        selectorRunners.submit(readingSelector);
-        selectorRunners.submit(writingSelector);
+    public NonBlockingArraySortingServer(ListTransferringProtocol protocol,
+                                         SortingEngine sortingEngine,
+                                         int port,
+                                         ServerSettings settings,
+                                         boolean logInfo) {
+        super(protocol, sortingEngine, port, settings, logInfo);
+        this.selectorRunners = Executors.newFixedThreadPool(settings.getSelectorLoops());
+        for (int i = 0; i < settings.getSelectorLoops(); ++i) {
+            SelectorLoop selectorLoop = new SelectorLoop();
+            selectorLoops.add(selectorLoop);
+            selectorRunners.submit(selectorLoop);
+        }
         this.logInfo = logInfo;
     }
 
+    public NonBlockingArraySortingServer(ListTransferringProtocol protocol,
+                                         SortingEngine sortingEngine,
+                                         int port,
+                                         boolean logInfo) {
+        this(protocol, sortingEngine, port, ServerSettings.DEFAULT, logInfo);
+    }
+
+    public NonBlockingArraySortingServer(ListTransferringProtocol protocol, int port, boolean logInfo) {
+        this(protocol, new ReferenceSortingEngine(), port, logInfo);
+    }
+
     @Override
     protected ClientHandler makeClientHandler(SocketChannel channel) {
-        return new NonBlockingClientHandler(channel, logInfo);
+        return new NonBlockingClientHandler(channel, chooseSelectorLoop(), logInfo);
     }
 
     @Override
     public void close() throws IOException {
-        readingSelector.close();
-        writingSelector.close();
+        for (SelectorLoop selectorLoop : selectorLoops) {
+            selectorLoop.close();
+        }
         selectorRunners.shutdown();
         try {
             if (!selectorRunners.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -61,42 +87,133 @@ public class NonBlockingArraySortingServer extends ClientAcceptingServer {
         super.close();
     }
 
+    private SelectorLoop chooseSelectorLoop() {
+        switch (getSettings().getSelectorLoopAssignment()) {
+            case ROUND_ROBIN:
+                return selectorLoops.get(Math.floorMod(nextSelectorLoop.getAndIncrement(), selectorLoops.size()));
+            case LEAST_LOADED:
+                return selectorLoops.stream()
+                        .min(Comparator.comparingInt(SelectorLoop::connectionsTotal))
+                        .orElseThrow();
+            default:
+                throw new IllegalStateException("Unexpected assignment: " + getSettings().getSelectorLoopAssignment());
+        }
+    }
+
+    public enum SelectorLoopAssignment {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
+
     private class NonBlockingClientHandler extends ClientHandler {
-        private final Queue<ByteBuffer> toSendQueue = new ConcurrentLinkedQueue<>();
-        private MessageAccepter messageAccepter = new MessageAccepter(getProtocol());
+        private final Queue<MessageCreator> toSendQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean isWriting = new AtomicBoolean(false);
+        private final AtomicLong queuedBytes = new AtomicLong(0);
+        private final ByteBuffer[] gatheredBuffers = new ByteBuffer[MAX_GATHERED_BUFFERS];
+        private volatile boolean isWriteRequested = false;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(getSettings().getReadBufferSize());
+        private final MessageAccepter messageAccepter = makeMessageAccepter();
+        // Clock reading of the read that brought the first bytes of the message being accepted
+        private boolean isMessageStarted = false;
+        private long messageReadStartNanos = 0;
+        private final ResponseSequencer responseSequencer = new ResponseSequencer(this::addMessageToSend);
+        private final SelectorLoop selectorLoop;
 
-        private NonBlockingClientHandler(SocketChannel socket, boolean logInfo) {
+        private NonBlockingClientHandler(SocketChannel socket, SelectorLoop selectorLoop, boolean logInfo) {
             super(socket, logInfo);
+            this.selectorLoop = selectorLoop;
         }
 
         @Override
         public void handle() {
-            readingSelector.registerClient(this);
+            selectorLoop.registerClient(this);
+        }
+
+        public void addMessageToSend(MessageCreator message) {
+            toSendQueue.add(message);
+            long limit = getSettings().getMaxQueuedBytesPerConnection();
+            long queued = queuedBytes.addAndGet(message.messageLength());
+            if (queued >= limit && queued - message.messageLength() < limit) {
+                selectorLoop.requestInterestUpdate(this);
+            }
+            flush();
+        }
+
+        // Whoever holds isWriting is the only writer: a worker writing directly, or the selector loop once the
+        // socket buffer filled up and OP_WRITE was requested. The queue is rechecked after every release
+        private void flush() {
+            while (!toSendQueue.isEmpty() && isWriting.compareAndSet(false, true)) {
+                boolean drained;
+                try {
+                    drained = write();
+                } catch (IOException e) {
+                    drained = false;
+                }
+                if (!drained) {
+                    isWriteRequested = true;
+                    selectorLoop.requestInterestUpdate(this);
+                    return;
+                }
+                isWriting.set(false);
+            }
+        }
+
+        private void writeDrained() {
+            isWriteRequested = false;
+            isWriting.set(false);
+            flush();
+        }
+
+        // Reading stops while the responses waiting for this client exceed the limit
+        private boolean isReadSuspended() {
+            return queuedBytes.get() >= getSettings().getMaxQueuedBytesPerConnection();
         }
 
-        public void addBufferToSend(ByteBuffer buffer) {
-            toSendQueue.add(buffer);
+        private int interestOps() {
+            return (isReadSuspended() ? 0 : SelectionKey.OP_READ) | (isWriteRequested ? SelectionKey.OP_WRITE : 0);
         }
 
+        // Gathers as many queued responses as fit into one write call
         public boolean write() throws IOException {
             while (!toSendQueue.isEmpty()) {
-                handlerLogger.info("Writing buffer to socket");
-                int bytesWritten = socket.write(toSendQueue.peek());
+                int buffersGathered = 0;
+                long bytesGathered = 0;
+                for (MessageCreator message : toSendQueue) {
+                    ByteBuffer[] messageBuffers = message.createdBuffers();
+                    if (buffersGathered + messageBuffers.length > gatheredBuffers.length) {
+                        break;
+                    }
+                    for (ByteBuffer buffer : messageBuffers) {
+                        gatheredBuffers[buffersGathered++] = buffer;
+                        bytesGathered += buffer.remaining();
+                    }
+                }
+                handlerLogger.info(String.format("Writing %d bytes to socket", bytesGathered));
+                long bytesWritten = socket.write(gatheredBuffers, 0, buffersGathered);
+                Arrays.fill(gatheredBuffers, 0, buffersGathered, null);
                 handlerLogger.info(String.format("Written %d bytes", bytesWritten));
-                assert toSendQueue.peek() != null;
-                if (toSendQueue.peek().hasRemaining()) {
+
+                long limit = getSettings().getMaxQueuedBytesPerConnection();
+                MessageCreator message;
+                while ((message = toSendQueue.peek()) != null && !message.hasRemaining()) {
+                    toSendQueue.poll();
+                    message.notifyWritten();
+                    long queued = queuedBytes.addAndGet(-message.messageLength());
+                    if (queued < limit && queued + message.messageLength() >= limit) {
+                        selectorLoop.requestInterestUpdate(this);
+                    }
+                }
+                if (bytesWritten < bytesGathered) {
                     return false;
                 }
-                toSendQueue.poll();
             }
             return true;
         }
 
         public boolean read() throws IOException {
-            while (true) {
-                ByteBuffer buffer = ByteBuffer.allocate(messageAccepter.getRemaining());
+            while (!isReadSuspended()) {
                 handlerLogger.info("Reading from socket");
-                int bytesRead = socket.read(buffer);
+                int bytesRead = socket.read(readBuffer);
                 handlerLogger.info(String.format("Read from socket %d bytes", bytesRead));
                 if (bytesRead < 0) {
                     return true;
@@ -104,71 +221,71 @@ public class NonBlockingArraySortingServer extends ClientAcceptingServer {
                 if (bytesRead == 0) {
                     break;
                 }
-                buffer.flip();
-                messageAccepter.accept(buffer);
-                if (messageAccepter.accepted().isPresent()) {
-                    submitClientTask(new ArraySortingTask(
-                            new ArrayList<>(messageAccepter.accepted().get()),
-                            this));
-                    messageAccepter = new MessageAccepter(getProtocol());
+                long readNanos = readClock();
+                readBuffer.flip();
+                while (readBuffer.hasRemaining()) {
+                    if (!isMessageStarted) {
+                        messageReadStartNanos = readNanos;
+                        isMessageStarted = true;
+                    }
+                    messageAccepter.accept(readBuffer);
+                    if (messageAccepter.isAccepted()) {
+                        handleRequest(messageAccepter, responseSequencer, NonBlockingArraySortingServer.this::submitClientTask,
+                                startTrace(messageReadStartNanos));
+                        messageAccepter.reset();
+                        isMessageStarted = false;
+                    }
                 }
+                readBuffer.clear();
             }
             return false;
         }
     }
 
-    private class ArraySortingTask implements Runnable {
-        private final List<Integer> array;
-        private final NonBlockingClientHandler client;
-
-        private ArraySortingTask(List<Integer> array, NonBlockingClientHandler client) {
-            this.array = array;
-            this.client = client;
-        }
-
-        @Override
-        public void run() {
-            sortArray(array);
-            MessageCreator messageCreator = new MessageCreator(array, getProtocol());
-            client.addBufferToSend(messageCreator.createdBuffer());
-            writingSelector.registerClient(client);
-        }
-    }
-
-    private abstract class SelectorHolder implements Closeable, Runnable {
+    // Owns a subset of connections and serves both their reads and writes, so a connection never changes threads
+    private class SelectorLoop implements Closeable, Runnable {
         private volatile boolean isRunning;
         private final Selector selector;
-        private final int selectorInterests;
-        private final Queue<NonBlockingClientHandler> nonRegisteredHandlers;
-        private final Lock socketRegistrationLock = new ReentrantLock();
-        protected final ContextLogger selectorLogger = new ContextLogger("Selector", false);
+        private final Queue<NonBlockingClientHandler> nonRegisteredHandlers = new ConcurrentLinkedQueue<>();
+        private final Queue<NonBlockingClientHandler> interestUpdates = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger connectionsTotal = new AtomicInteger(0);
+        private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+        private final ContextLogger selectorLogger = new ContextLogger("Selector", false);
 
-        protected SelectorHolder(int selectorInterests) {
+        private SelectorLoop() {
             try {
                 this.selector = Selector.open();
             } catch (IOException e) {
                 throw new RuntimeException("Unable to open selector");
             }
-            this.selectorInterests = selectorInterests;
-            this.nonRegisteredHandlers = new ArrayDeque<>();
+        }
+
+        public int connectionsTotal() {
+            return connectionsTotal.get();
         }
 
         public void registerClient(NonBlockingClientHandler client) {
-            socketRegistrationLock.lock();
+            connectionsTotal.incrementAndGet();
             try {
-                if (client.socket.isBlocking()) {
-                    client.socket.configureBlocking(false);
-                }
+                client.socket.configureBlocking(false);
                 nonRegisteredHandlers.add(client);
-                selector.wakeup();
+                wakeup();
             } catch (IOException e) {
                 selectorLogger.handleException(e);
-            } finally {
-                socketRegistrationLock.unlock();
             }
         }
 
-        protected abstract void handleSelectedClient(SelectionKey key) throws IOException;
+        public void requestInterestUpdate(NonBlockingClientHandler client) {
+            interestUpdates.add(client);
+            wakeup();
+        }
+
+        // One wakeup per select() is enough, the loop drains every queued request after waking up
+        private void wakeup() {
+            if (wakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
 
         @Override
         public void close() throws IOException {
@@ -182,61 +299,76 @@ public class NonBlockingArraySortingServer extends ClientAcceptingServer {
             while (isRunning) {
                 try {
                     selector.select();
-                    socketRegistrationLock.lock();
-                    try {
-                        for (ClientHandler newClient : nonRegisteredHandlers) {
-                            newClient.socket.register(
-                                    selector,
-                                    selectorInterests,
-                                    newClient);
-                        }
-                        nonRegisteredHandlers.clear();
-                    } finally {
-                        socketRegistrationLock.unlock();
-                    }
+                    wakeupPending.set(false);
+                    registerNewClients();
+                    applyInterestUpdates();
 
                     Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
                     while (iterator.hasNext()) {
                         SelectionKey key = iterator.next();
-                        if ((key.interestOps() & selectorInterests) > 0) {
-                            handleSelectedClient(key);
-                        }
                         iterator.remove();
+                        handleSelectedClient(key);
                     }
+                } catch (ClosedSelectorException e) {
+                    isRunning = false;
                 } catch (IOException e) {
                     selectorLogger.handleException(e);
                     isRunning = false;
                 }
             }
         }
-    }
-
-    private class WritingSelectorHolder extends SelectorHolder {
-        private WritingSelectorHolder() {
-            super(SelectionKey.OP_WRITE);
-        }
 
-        @Override
-        protected void handleSelectedClient(SelectionKey key) throws IOException {
-            assert key.attachment() instanceof NonBlockingClientHandler;
-            NonBlockingClientHandler client = (NonBlockingClientHandler) key.attachment();
-            if (client.write()) {
-                key.cancel();
+        private void registerNewClients() {
+            NonBlockingClientHandler newClient;
+            while ((newClient = nonRegisteredHandlers.poll()) != null) {
+                try {
+                    newClient.socket.register(selector, SelectionKey.OP_READ, newClient);
+                } catch (ClosedChannelException e) {
+                    connectionsTotal.decrementAndGet();
+                }
             }
         }
-    }
 
-    private class ReadingSelectorHolder extends SelectorHolder {
-        private ReadingSelectorHolder() {
-            super(SelectionKey.OP_READ);
+        private void applyInterestUpdates() {
+            NonBlockingClientHandler client;
+            while ((client = interestUpdates.poll()) != null) {
+                SelectionKey key = client.socket.keyFor(selector);
+                if (key != null && key.isValid()) {
+                    key.interestOps(client.interestOps());
+                }
+            }
         }
 
-        @Override
-        protected void handleSelectedClient(SelectionKey key) throws IOException {
+        private void handleSelectedClient(SelectionKey key) {
             assert key.attachment() instanceof NonBlockingClientHandler;
             NonBlockingClientHandler client = (NonBlockingClientHandler) key.attachment();
-            if (client.read()) {
-                key.cancel();
+            try {
+                if (key.isReadable() && client.read()) {
+                    disconnect(key, client);
+                    return;
+                }
+                if (key.isValid() && key.isWritable()) {
+                    if (client.write()) {
+                        client.writeDrained();
+                    }
+                    key.interestOps(client.interestOps());
+                }
+            } catch (ProtocolException e) {
+                client.handlerLogger.handleException(e);
+                disconnect(key, client);
+            } catch (IOException e) {
+                selectorLogger.handleException(e);
+                disconnect(key, client);
+            }
+        }
+
+        private void disconnect(SelectionKey key, NonBlockingClientHandler client) {
+            key.cancel();
+            connectionsTotal.decrementAndGet();
+            try {
+                client.close();
+            } catch (IOException e) {
+                selectorLogger.handleException(e);
             }
         }
     }
@@ -0,0 +1,34 @@
+package server;
+
+// Timestamps one request on its way through the server. Each mark records the time since the previous one,
+// the disabled trace records nothing and does not even read the clock
+class RequestTrace {
+    static final RequestTrace DISABLED = new RequestTrace(null, 0);
+
+    private final StageLatencies latencies;
+    private final long startNanos;
+    private long lastNanos;
+
+    RequestTrace(StageLatencies latencies, long startNanos) {
+        this.latencies = latencies;
+        this.startNanos = startNanos;
+        this.lastNanos = startNanos;
+    }
+
+    void mark(StageLatencies.Stage stage) {
+        if (latencies == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        latencies.record(stage, now - lastNanos);
+        lastNanos = now;
+    }
+
+    void finish() {
+        if (latencies == null) {
+            return;
+        }
+        mark(StageLatencies.Stage.WRITE);
+        latencies.record(StageLatencies.Stage.TOTAL, lastNanos - startNanos);
+    }
+}
@@ -0,0 +1,46 @@
+package server;
+
+import protocol.MessageCreator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Responses of one connection may be completed by parallel tasks in any order, but are sent in request order
+public class ResponseSequencer {
+    private final Consumer<MessageCreator> sender;
+    private final AtomicLong nextSequenceNumber = new AtomicLong(0);
+    private final Map<Long, MessageCreator> completedResponses = new HashMap<>();
+    private final Lock sendingLock = new ReentrantLock();
+    private long nextToSend = 0;
+
+    public ResponseSequencer(Consumer<MessageCreator> sender) {
+        this.sender = sender;
+    }
+
+    public long nextSequenceNumber() {
+        return nextSequenceNumber.getAndIncrement();
+    }
+
+    public void complete(long sequenceNumber, MessageCreator response) {
+        sendingLock.lock();
+        try {
+            if (sequenceNumber != nextToSend) {
+                completedResponses.put(sequenceNumber, response);
+                return;
+            }
+            sender.accept(response);
+            ++nextToSend;
+            MessageCreator nextResponse;
+            while ((nextResponse = completedResponses.remove(nextToSend)) != null) {
+                sender.accept(nextResponse);
+                ++nextToSend;
+            }
+        } finally {
+            sendingLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Takes one task from each client with queued tasks in turn, so a client flooding the server only delays itself
+class RoundRobinTaskQueue extends ClientTaskQueue {
+    private final Map<Object, Deque<Runnable>> clientQueues = new HashMap<>();
+    private final Deque<Object> clientTurns = new ArrayDeque<>();
+
+    RoundRobinTaskQueue(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    protected void enqueue(Runnable task) {
+        Object client = clientOf(task);
+        Deque<Runnable> clientQueue = clientQueues.computeIfAbsent(client, key -> new ArrayDeque<>());
+        if (clientQueue.isEmpty()) {
+            clientTurns.addLast(client);
+        }
+        clientQueue.addLast(task);
+    }
+
+    @Override
+    protected Runnable dequeue() {
+        Object client = clientTurns.pollFirst();
+        Deque<Runnable> clientQueue = clientQueues.get(client);
+        Runnable task = clientQueue.pollFirst();
+        if (clientQueue.isEmpty()) {
+            clientQueues.remove(client);
+        } else {
+            clientTurns.addLast(client);
+        }
+        return task;
+    }
+
+    @Override
+    protected Runnable head() {
+        return clientQueues.get(clientTurns.peekFirst()).peekFirst();
+    }
+
+    @Override
+    protected boolean removeTask(Object task) {
+        if (!(task instanceof Runnable)) {
+            return false;
+        }
+        Object client = clientOf((Runnable) task);
+        Deque<Runnable> clientQueue = clientQueues.get(client);
+        if (clientQueue == null || !clientQueue.remove(task)) {
+            return false;
+        }
+        if (clientQueue.isEmpty()) {
+            clientQueues.remove(client);
+            clientTurns.remove(client);
+        }
+        return true;
+    }
+
+    @Override
+    protected List<Runnable> tasks() {
+        List<Runnable> tasks = new ArrayList<>();
+        for (Object client : clientTurns) {
+            tasks.addAll(clientQueues.get(client));
+        }
+        return tasks;
+    }
+}
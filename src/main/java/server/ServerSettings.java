@@ -0,0 +1,211 @@
+package server;
+
+import protocol.MessageAccepter;
+
+public class ServerSettings implements Cloneable {
+    public static final ServerSettings DEFAULT = new ServerSettings();
+
+    private int taskExecutorThreads = Runtime.getRuntime().availableProcessors();
+    private ClientAcceptingServer.AcceptMode acceptMode = ClientAcceptingServer.AcceptMode.BLOCKING;
+    private int acceptBacklog = 0;
+    private int acceptBatchSize = 64;
+    private boolean virtualThreadSorting = false;
+    private int channelGroupThreads = Runtime.getRuntime().availableProcessors();
+    private int maxMessageLength = MessageAccepter.DEFAULT_MAX_MESSAGE_LENGTH;
+    private int readBufferSize = 64 * 1024;
+    private int maxPooledBufferSize = 1024 * 1024;
+    private int pooledBuffersPerSizeClass = 16;
+    private int selectorLoops = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private NonBlockingArraySortingServer.SelectorLoopAssignment selectorLoopAssignment =
+            NonBlockingArraySortingServer.SelectorLoopAssignment.ROUND_ROBIN;
+    private long resultCacheSize = 0;
+    private long maxQueuedBytesPerConnection = 16 * 1024 * 1024;
+    private ClientTaskExecutor.AdmissionPolicy admissionPolicy = ClientTaskExecutor.AdmissionPolicy.UNBOUNDED;
+    private int taskQueueCapacity = 1024;
+    private int perClientTaskLimit = 16;
+    private ClientTaskExecutor.Scheduling scheduling = ClientTaskExecutor.Scheduling.FIFO;
+    private long agingNanosPerElement = 1000;
+    private boolean stageTracing = false;
+
+    private ServerSettings() {
+    }
+
+    public int getTaskExecutorThreads() {
+        return taskExecutorThreads;
+    }
+
+    public ClientAcceptingServer.AcceptMode getAcceptMode() {
+        return acceptMode;
+    }
+
+    public int getAcceptBacklog() {
+        return acceptBacklog;
+    }
+
+    public int getAcceptBatchSize() {
+        return acceptBatchSize;
+    }
+
+    public boolean isVirtualThreadSorting() {
+        return virtualThreadSorting;
+    }
+
+    public int getChannelGroupThreads() {
+        return channelGroupThreads;
+    }
+
+    public int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    public int getMaxPooledBufferSize() {
+        return maxPooledBufferSize;
+    }
+
+    public int getPooledBuffersPerSizeClass() {
+        return pooledBuffersPerSizeClass;
+    }
+
+    public int getSelectorLoops() {
+        return selectorLoops;
+    }
+
+    public NonBlockingArraySortingServer.SelectorLoopAssignment getSelectorLoopAssignment() {
+        return selectorLoopAssignment;
+    }
+
+    public long getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public long getMaxQueuedBytesPerConnection() {
+        return maxQueuedBytesPerConnection;
+    }
+
+    public ClientTaskExecutor.AdmissionPolicy getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+
+    public int getTaskQueueCapacity() {
+        return taskQueueCapacity;
+    }
+
+    public int getPerClientTaskLimit() {
+        return perClientTaskLimit;
+    }
+
+    public ClientTaskExecutor.Scheduling getScheduling() {
+        return scheduling;
+    }
+
+    public long getAgingNanosPerElement() {
+        return agingNanosPerElement;
+    }
+
+    public boolean isStageTracing() {
+        return stageTracing;
+    }
+
+    public ServerSettings withTaskExecutorThreads(int taskExecutorThreads) {
+        ServerSettings settings = copy();
+        settings.taskExecutorThreads = taskExecutorThreads;
+        return settings;
+    }
+
+    public ServerSettings withAccept(ClientAcceptingServer.AcceptMode acceptMode, int acceptBacklog, int acceptBatchSize) {
+        ServerSettings settings = copy();
+        settings.acceptMode = acceptMode;
+        settings.acceptBacklog = acceptBacklog;
+        settings.acceptBatchSize = acceptBatchSize;
+        return settings;
+    }
+
+    public ServerSettings withVirtualThreadSorting(boolean virtualThreadSorting) {
+        ServerSettings settings = copy();
+        settings.virtualThreadSorting = virtualThreadSorting;
+        return settings;
+    }
+
+    public ServerSettings withChannelGroupThreads(int channelGroupThreads) {
+        ServerSettings settings = copy();
+        settings.channelGroupThreads = channelGroupThreads;
+        return settings;
+    }
+
+    public ServerSettings withMaxMessageLength(int maxMessageLength) {
+        ServerSettings settings = copy();
+        settings.maxMessageLength = maxMessageLength;
+        return settings;
+    }
+
+    public ServerSettings withReadBufferSize(int readBufferSize) {
+        ServerSettings settings = copy();
+        settings.readBufferSize = readBufferSize;
+        return settings;
+    }
+
+    public ServerSettings withBufferPool(int maxPooledBufferSize, int pooledBuffersPerSizeClass) {
+        ServerSettings settings = copy();
+        settings.maxPooledBufferSize = maxPooledBufferSize;
+        settings.pooledBuffersPerSizeClass = pooledBuffersPerSizeClass;
+        return settings;
+    }
+
+    public ServerSettings withSelectorLoops(int selectorLoops,
+                                            NonBlockingArraySortingServer.SelectorLoopAssignment assignment) {
+        ServerSettings settings = copy();
+        settings.selectorLoops = selectorLoops;
+        settings.selectorLoopAssignment = assignment;
+        return settings;
+    }
+
+    // Zero disables the cache
+    public ServerSettings withResultCache(long resultCacheSize) {
+        ServerSettings settings = copy();
+        settings.resultCacheSize = resultCacheSize;
+        return settings;
+    }
+
+    public ServerSettings withMaxQueuedBytesPerConnection(long maxQueuedBytesPerConnection) {
+        ServerSettings settings = copy();
+        settings.maxQueuedBytesPerConnection = maxQueuedBytesPerConnection;
+        return settings;
+    }
+
+    public ServerSettings withAdmission(ClientTaskExecutor.AdmissionPolicy admissionPolicy,
+                                       int taskQueueCapacity,
+                                       int perClientTaskLimit) {
+        ServerSettings settings = copy();
+        settings.admissionPolicy = admissionPolicy;
+        settings.taskQueueCapacity = taskQueueCapacity;
+        settings.perClientTaskLimit = perClientTaskLimit;
+        return settings;
+    }
+
+    // Aging only matters for shortest-job-first: a task may wait that long per array element for smaller ones
+    public ServerSettings withScheduling(ClientTaskExecutor.Scheduling scheduling, long agingNanosPerElement) {
+        ServerSettings settings = copy();
+        settings.scheduling = scheduling;
+        settings.agingNanosPerElement = agingNanosPerElement;
+        return settings;
+    }
+
+    // Times every request through read, decode, queue, sort, encode and write. Off it costs a branch per stage
+    public ServerSettings withStageTracing(boolean stageTracing) {
+        ServerSettings settings = copy();
+        settings.stageTracing = stageTracing;
+        return settings;
+    }
+
+    private ServerSettings copy() {
+        try {
+            return (ServerSettings) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Runs the smallest arrays first. A task is ordered by its enqueue time plus a delay proportional to its size,
+// so a large task is overtaken only by tasks enqueued less than that delay after it and is never starved
+class ShortestJobFirstTaskQueue extends ClientTaskQueue {
+    private final long agingNanosPerElement;
+    private final PriorityQueue<ScheduledTask> tasks = new PriorityQueue<>(
+            Comparator.<ScheduledTask>comparingLong(task -> task.deadline).thenComparingLong(task -> task.order));
+    private long nextOrder = 0;
+
+    ShortestJobFirstTaskQueue(int capacity, long agingNanosPerElement) {
+        super(capacity);
+        this.agingNanosPerElement = agingNanosPerElement;
+    }
+
+    @Override
+    protected void enqueue(Runnable task) {
+        long deadline = System.nanoTime() + sizeOf(task) * agingNanosPerElement;
+        tasks.add(new ScheduledTask(task, deadline, nextOrder++));
+    }
+
+    @Override
+    protected Runnable dequeue() {
+        return tasks.poll().task;
+    }
+
+    @Override
+    protected Runnable head() {
+        return tasks.peek().task;
+    }
+
+    @Override
+    protected boolean removeTask(Object task) {
+        Iterator<ScheduledTask> iterator = tasks.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().task == task) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected List<Runnable> tasks() {
+        List<Runnable> scheduledTasks = new ArrayList<>(tasks.size());
+        for (ScheduledTask task : tasks) {
+            scheduledTasks.add(task.task);
+        }
+        return scheduledTasks;
+    }
+
+    private static class ScheduledTask {
+        private final Runnable task;
+        private final long deadline;
+        private final long order;
+
+        private ScheduledTask(Runnable task, long deadline, long order) {
+            this.task = task;
+            this.deadline = deadline;
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Maps an encoded request body to its encoded sorted response, so repeated arrays skip decode, sort and encode.
+// Identical requests that arrive while the first one is still sorting wait for it instead of sorting again
+public class SortedResultCache {
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final long maxBytes;
+    private final Map<Key, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Lock entriesLock = new ReentrantLock();
+    private final Map<Key, CompletableFuture<ByteBuffer>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private long cachedBytes = 0;
+
+    public SortedResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // The request body is hashed and compared where it is, it is copied only when a lookup takes the lead and
+    // its key goes into the maps. Only the leader's ticket keeps a key, the body may be reused after the lookup
+    public Ticket lookup(ByteBuffer requestBody) {
+        Key key = Key.view(requestBody);
+        ByteBuffer cached = get(key);
+        if (cached != null) {
+            hits.increment();
+            return new Ticket(null, CompletableFuture.completedFuture(cached), false);
+        }
+        CompletableFuture<ByteBuffer> existing = inFlight.get(key);
+        if (existing != null) {
+            coalesced.increment();
+            return new Ticket(null, existing, false);
+        }
+        Key ownKey = key.copy();
+        CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(ownKey, response);
+        if (existing != null) {
+            coalesced.increment();
+            return new Ticket(null, existing, false);
+        }
+        // The previous leader may have finished between the cache check and taking the lead
+        cached = get(ownKey);
+        if (cached != null) {
+            inFlight.remove(ownKey, response);
+            response.complete(cached);
+            hits.increment();
+            return new Ticket(null, response, false);
+        }
+        misses.increment();
+        return new Ticket(ownKey, response, true);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getCachedBytes() {
+        entriesLock.lock();
+        try {
+            return cachedBytes;
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private ByteBuffer get(Key key) {
+        entriesLock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    private void put(Key key, ByteBuffer response) {
+        long entryBytes = entryBytes(key, response);
+        if (entryBytes > maxBytes) {
+            return;
+        }
+        entriesLock.lock();
+        try {
+            ByteBuffer previous = entries.put(key, response);
+            if (previous != null) {
+                cachedBytes -= entryBytes(key, previous);
+            }
+            cachedBytes += entryBytes;
+            Iterator<Map.Entry<Key, ByteBuffer>> leastRecentlyUsed = entries.entrySet().iterator();
+            while (cachedBytes > maxBytes && leastRecentlyUsed.hasNext()) {
+                Map.Entry<Key, ByteBuffer> evicted = leastRecentlyUsed.next();
+                cachedBytes -= entryBytes(evicted.getKey(), evicted.getValue());
+                leastRecentlyUsed.remove();
+            }
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    private static long entryBytes(Key key, ByteBuffer response) {
+        return key.bytes.remaining() + response.capacity() + ENTRY_OVERHEAD_BYTES;
+    }
+
+    // Handle of one lookup. Only the leader computes the response, everyone else just waits for it
+    public class Ticket {
+        private final Key key;
+        private final CompletableFuture<ByteBuffer> response;
+        private final boolean isLeader;
+
+        private Ticket(Key key, CompletableFuture<ByteBuffer> response, boolean isLeader) {
+            this.key = key;
+            this.response = response;
+            this.isLeader = isLeader;
+        }
+
+        public boolean isLeader() {
+            return isLeader;
+        }
+
+        public CompletableFuture<ByteBuffer> response() {
+            return response;
+        }
+
+        public void complete(ByteBuffer encodedResponse) {
+            ByteBuffer sharedResponse = encodedResponse.asReadOnlyBuffer();
+            put(key, sharedResponse);
+            inFlight.remove(key, response);
+            response.complete(sharedResponse);
+        }
+
+        public void fail(Throwable e) {
+            inFlight.remove(key, response);
+            response.completeExceptionally(e);
+        }
+    }
+
+    // Either a view of a request body, only good for the lookup, or a copy of it owned by the maps
+    private static class Key {
+        private final ByteBuffer bytes;
+        private final long hash;
+
+        private Key(ByteBuffer bytes, long hash) {
+            this.bytes = bytes;
+            this.hash = hash;
+        }
+
+        private static Key view(ByteBuffer body) {
+            ByteBuffer bytes = body.slice();
+            return new Key(bytes, hash(bytes));
+        }
+
+        private Key copy() {
+            ByteBuffer ownBytes = ByteBuffer.allocate(bytes.remaining());
+            ownBytes.put(bytes.duplicate()).flip();
+            return new Key(ownBytes, hash);
+        }
+
+        // 64-bit multiply-xorshift over 8-byte words, the tail is folded in byte by byte
+        private static long hash(ByteBuffer bytes) {
+            int length = bytes.remaining();
+            long h = 0x9E3779B97F4A7C15L ^ length;
+            int i = 0;
+            for (; i + Long.BYTES <= length; i += Long.BYTES) {
+                h = mix(h ^ bytes.getLong(i));
+            }
+            for (; i < length; ++i) {
+                h = mix(h ^ bytes.get(i));
+            }
+            return h;
+        }
+
+        private static long mix(long h) {
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+            h *= 0x94D049BB133111EBL;
+            return h ^ (h >>> 29);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && bytes.equals(other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+    }
+}
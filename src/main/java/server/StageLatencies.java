@@ -0,0 +1,43 @@
+package server;
+
+import stats.LatencyHistogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// Per-stage latency histograms of the requests a server handled
+public class StageLatencies {
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+
+    public StageLatencies() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms.get(stage).record(nanos);
+    }
+
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    public enum Stage {
+        // From the socket read that brought the first bytes of a request until the whole request is read
+        READ,
+        DECODE,
+        // Waiting in the client task executor
+        QUEUE,
+        SORT,
+        ENCODE,
+        // From the previous stage until the response is fully written, waiting for earlier responses included.
+        // A cached response goes straight from READ to WRITE
+        WRITE,
+        TOTAL
+    }
+}
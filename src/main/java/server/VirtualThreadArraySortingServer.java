@@ -0,0 +1,156 @@
+package server;
+
+import protocol.ListTransferringProtocol;
+import protocol.MessageAccepter;
+import protocol.MessageCreator;
+import protocol.PrimitiveListTransferringProtocol;
+import sorting.ReferenceSortingEngine;
+import sorting.SortingEngine;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class VirtualThreadArraySortingServer extends ClientAcceptingServer {
+    private final ExecutorService connectionExecutor = VirtualThreads.newThreadPerTaskExecutor();
+    private final boolean logInfo;
+    private final boolean isUsingVirtualThreads = VirtualThreads.available();
+
+    public VirtualThreadArraySortingServer(ListTransferringProtocol protocol,
+                                           SortingEngine sortingEngine,
+                                           int port,
+                                           ServerSettings settings,
+                                           boolean logInfo) {
+        super(protocol, sortingEngine, port, settings, logInfo);
+        this.logInfo = logInfo;
+        if (!isUsingVirtualThreads) {
+            serverLogger.importantInfo("Virtual threads are not available, falling back to a platform thread per task");
+        }
+    }
+
+    public VirtualThreadArraySortingServer(ListTransferringProtocol protocol,
+                                           SortingEngine sortingEngine,
+                                           int port,
+                                           boolean logInfo) {
+        this(protocol, sortingEngine, port, ServerSettings.DEFAULT, logInfo);
+    }
+
+    public VirtualThreadArraySortingServer(ListTransferringProtocol protocol, int port, boolean logInfo) {
+        this(protocol, new ReferenceSortingEngine(), port, logInfo);
+    }
+
+    public static void main(String[] args) {
+        ArraySortingServer server = new VirtualThreadArraySortingServer(
+                new PrimitiveListTransferringProtocol(),
+                8000,
+                false
+        );
+        server.run();
+    }
+
+    @Override
+    public boolean isUsingVirtualThreads() {
+        return isUsingVirtualThreads;
+    }
+
+    @Override
+    protected ClientHandler makeClientHandler(SocketChannel socket) {
+        return new VirtualThreadClientHandler(socket, logInfo);
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        connectionExecutor.shutdownNow();
+        try {
+            if (!connectionExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                throw new RuntimeException("Connection threads won't terminate");
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private class VirtualThreadClientHandler extends ClientHandler {
+        private final BlockingArrayChannel arrayChannel;
+        // Responses are written by the connection's own writer thread, so a client that reads slowly blocks
+        // neither the sorting workers nor the sequencer's lock
+        private final BlockingQueue<MessageCreator> pendingResponses = new LinkedBlockingQueue<>();
+        // Queued after the last response once the client has no more requests, the writer closes on it
+        private final MessageCreator endOfResponses = MessageCreator.busy();
+        private final ResponseSequencer responseSequencer = new ResponseSequencer(pendingResponses::add);
+        private volatile Future<?> writer = null;
+
+        private VirtualThreadClientHandler(SocketChannel socket, boolean logInfo) {
+            super(socket, logInfo);
+            this.arrayChannel = new BlockingArrayChannel(
+                    socket,
+                    makeMessageAccepter(),
+                    getSettings().getReadBufferSize(),
+                    VirtualThreadArraySortingServer.this::readClock);
+        }
+
+        @Override
+        public void handle() {
+            writer = connectionExecutor.submit(this::writeMessages);
+            connectionExecutor.submit(() -> {
+                try {
+                    while (true) {
+                        handlerLogger.info("Reading array");
+                        MessageAccepter message = arrayChannel.readMessage();
+                        if (message == null) {
+                            // Sequenced like a response, so every request read so far is answered first
+                            responseSequencer.complete(responseSequencer.nextSequenceNumber(), endOfResponses);
+                            return;
+                        }
+                        handleRequest(message, responseSequencer, getSettings().isVirtualThreadSorting()
+                                ? connectionExecutor
+                                : VirtualThreadArraySortingServer.this::submitClientTask,
+                                startTrace(arrayChannel.getMessageReadStartNanos()));
+                        message.reset();
+                    }
+                } catch (IOException | RejectedExecutionException e) {
+                    if (running()) {
+                        handlerLogger.handleException(e);
+                    }
+                }
+                disconnect();
+            });
+        }
+
+        // A failed write closes the connection, which also stops its reader
+        private void writeMessages() {
+            try {
+                while (true) {
+                    MessageCreator message = pendingResponses.take();
+                    if (message == endOfResponses) {
+                        close();
+                        return;
+                    }
+                    handlerLogger.info("Writing array");
+                    arrayChannel.writeMessage(message);
+                }
+            } catch (IOException e) {
+                if (running() && socket.isOpen()) {
+                    handlerLogger.handleException(e);
+                }
+                disconnect();
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        // Drops the responses not written yet, only for socket errors and a closing server
+        private void disconnect() {
+            writer.cancel(true);
+            try {
+                close();
+            } catch (IOException e) {
+                handlerLogger.handleException(e);
+            }
+        }
+    }
+}
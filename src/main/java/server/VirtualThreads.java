@@ -0,0 +1,33 @@
+package server;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Virtual threads are looked up reflectively, so the project still compiles for and runs on JDKs without them
+public final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    public static boolean available() {
+        return newVirtualThreadPerTaskExecutor().map(executor -> {
+            executor.shutdown();
+            return true;
+        }).orElse(false);
+    }
+
+    public static ExecutorService newThreadPerTaskExecutor() {
+        return newVirtualThreadPerTaskExecutor().orElseGet(Executors::newCachedThreadPool);
+    }
+
+    private static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null));
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package sorting;
+
+public class DualPivotQuickSortingEngine implements SortingEngine {
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    @Override
+    public void sort(int[] array, int fromIndex, int toIndex) {
+        // Past this many partitioning levels the pivots are bad for the input, heap sort finishes the range
+        int maxDepth = 2 * (Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(1, toIndex - fromIndex)));
+        sortRange(array, fromIndex, toIndex - 1, maxDepth);
+    }
+
+    // Recurses into the two smaller parts and loops on the largest one, so the stack stays logarithmic
+    private static void sortRange(int[] a, int left, int right, int depth) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(a, left, right);
+                return;
+            }
+            int third = (right - left) / 3;
+            int m1 = left + third;
+            int m2 = right - third;
+            if (a[m1] > a[m2]) {
+                swap(a, m1, m2);
+            }
+            swap(a, left, m1);
+            swap(a, right, m2);
+            int pivot1 = a[left];
+            int pivot2 = a[right];
+
+            int less = left + 1;
+            int great = right - 1;
+            for (int k = less; k <= great; ++k) {
+                if (a[k] < pivot1) {
+                    swap(a, k, less++);
+                } else if (a[k] > pivot2) {
+                    while (k < great && a[great] > pivot2) {
+                        --great;
+                    }
+                    swap(a, k, great--);
+                    if (a[k] < pivot1) {
+                        swap(a, k, less++);
+                    }
+                }
+            }
+            swap(a, left, --less);
+            swap(a, right, ++great);
+
+            // With equal pivots the middle part holds only them, otherwise a large middle part is likely
+            // to have many of them, moved to its ends so that they are not partitioned again
+            int middleLeft = less + 1;
+            int middleRight = great - 1;
+            if (pivot1 == pivot2) {
+                middleLeft = great;
+            } else if (middleRight - middleLeft > (right - left) / 2) {
+                for (int k = middleLeft; k <= middleRight; ++k) {
+                    if (a[k] == pivot1) {
+                        swap(a, k, middleLeft++);
+                    } else if (a[k] == pivot2) {
+                        while (k < middleRight && a[middleRight] == pivot2) {
+                            --middleRight;
+                        }
+                        swap(a, k, middleRight--);
+                        if (a[k] == pivot1) {
+                            swap(a, k, middleLeft++);
+                        }
+                    }
+                }
+            }
+
+            int leftSize = less - left;
+            int middleSize = middleRight - middleLeft + 1;
+            int rightSize = right - great;
+            if (leftSize >= middleSize && leftSize >= rightSize) {
+                sortRange(a, middleLeft, middleRight, depth);
+                sortRange(a, great + 1, right, depth);
+                right = less - 1;
+            } else if (rightSize >= middleSize) {
+                sortRange(a, left, less - 1, depth);
+                sortRange(a, middleLeft, middleRight, depth);
+                left = great + 1;
+            } else {
+                sortRange(a, left, less - 1, depth);
+                sortRange(a, great + 1, right, depth);
+                left = middleLeft;
+                right = middleRight;
+            }
+        }
+        insertionSort(a, left, right);
+    }
+
+    private static void insertionSort(int[] a, int left, int right) {
+        for (int i = left + 1; i <= right; ++i) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > value) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = value;
+        }
+    }
+
+    private static void heapSort(int[] a, int left, int right) {
+        int size = right - left + 1;
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(a, left, i, size);
+        }
+        for (int end = size - 1; end > 0; --end) {
+            swap(a, left, left + end);
+            siftDown(a, left, 0, end);
+        }
+    }
+
+    private static void siftDown(int[] a, int offset, int i, int size) {
+        int value = a[offset + i];
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && a[offset + child + 1] > a[offset + child]) {
+                ++child;
+            }
+            if (a[offset + child] <= value) {
+                break;
+            }
+            a[offset + i] = a[offset + child];
+            i = child;
+        }
+        a[offset + i] = value;
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+}
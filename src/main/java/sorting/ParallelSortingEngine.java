@@ -0,0 +1,117 @@
+package sorting;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+
+public class ParallelSortingEngine implements SortingEngine {
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 15;
+    private static final int MIN_CHUNK_LENGTH = 1 << 12;
+
+    private final SortingEngine sequentialEngine;
+    private final ForkJoinPool pool;
+    private final Semaphore parallelSorts;
+    private final int parallelThreshold;
+    private final int parallelism;
+
+    public ParallelSortingEngine(SortingEngine sequentialEngine,
+                                 int parallelThreshold,
+                                 int parallelism,
+                                 int maxParallelSorts) {
+        this.sequentialEngine = sequentialEngine;
+        this.parallelThreshold = parallelThreshold;
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism);
+        this.parallelSorts = new Semaphore(maxParallelSorts);
+    }
+
+    public ParallelSortingEngine(SortingEngine sequentialEngine, int parallelThreshold) {
+        this(sequentialEngine,
+                parallelThreshold,
+                Runtime.getRuntime().availableProcessors(),
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    @Override
+    public void sort(int[] array, int fromIndex, int toIndex) {
+        int length = toIndex - fromIndex;
+        // Fork-join subtasks run on a dedicated pool, and short arrays (or large ones arriving while every
+        // parallel slot is taken) are sorted by the calling task thread, so small requests are never queued
+        // behind another client's chunks
+        if (length < parallelThreshold || !parallelSorts.tryAcquire()) {
+            sequentialEngine.sort(array, fromIndex, toIndex);
+            return;
+        }
+        try {
+            int chunkLength = Math.max(MIN_CHUNK_LENGTH, length / (parallelism * 2) + 1);
+            pool.invoke(new ChunkSortingTask(
+                    sequentialEngine, array, new int[length], fromIndex, fromIndex, toIndex, chunkLength));
+        } finally {
+            parallelSorts.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        sequentialEngine.close();
+    }
+
+    private static class ChunkSortingTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SortingEngine sequentialEngine;
+        private final int[] array;
+        private final int[] buffer;
+        private final int bufferBase;
+        private final int fromIndex;
+        private final int toIndex;
+        private final int chunkLength;
+
+        private ChunkSortingTask(SortingEngine sequentialEngine,
+                                 int[] array,
+                                 int[] buffer,
+                                 int bufferBase,
+                                 int fromIndex,
+                                 int toIndex,
+                                 int chunkLength) {
+            this.sequentialEngine = sequentialEngine;
+            this.array = array;
+            this.buffer = buffer;
+            this.bufferBase = bufferBase;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.chunkLength = chunkLength;
+        }
+
+        @Override
+        protected void compute() {
+            if (toIndex - fromIndex <= chunkLength) {
+                sequentialEngine.sort(array, fromIndex, toIndex);
+                return;
+            }
+            int middle = (fromIndex + toIndex) >>> 1;
+            invokeAll(
+                    new ChunkSortingTask(sequentialEngine, array, buffer, bufferBase, fromIndex, middle, chunkLength),
+                    new ChunkSortingTask(sequentialEngine, array, buffer, bufferBase, middle, toIndex, chunkLength)
+            );
+            merge(middle);
+        }
+
+        private void merge(int middle) {
+            if (array[middle - 1] <= array[middle]) {
+                return;
+            }
+            int leftLength = middle - fromIndex;
+            System.arraycopy(array, fromIndex, buffer, fromIndex - bufferBase, leftLength);
+            int left = fromIndex - bufferBase;
+            int leftEnd = left + leftLength;
+            int right = middle;
+            int target = fromIndex;
+            while (left < leftEnd && right < toIndex) {
+                array[target++] = buffer[left] <= array[right] ? buffer[left++] : array[right++];
+            }
+            System.arraycopy(buffer, left, array, target, leftEnd - left);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package sorting;
+
+import java.util.Arrays;
+
+public class RadixSortingEngine implements SortingEngine {
+    private static final int DIGIT_BITS = 8;
+    private static final int DIGIT_VALUES = 1 << DIGIT_BITS;
+    private static final int DIGIT_MASK = DIGIT_VALUES - 1;
+    private static final int SMALL_ARRAY_THRESHOLD = 64;
+
+    private final SortingEngine smallArrayEngine = new DualPivotQuickSortingEngine();
+
+    @Override
+    public void sort(int[] array, int fromIndex, int toIndex) {
+        int length = toIndex - fromIndex;
+        if (length < SMALL_ARRAY_THRESHOLD) {
+            smallArrayEngine.sort(array, fromIndex, toIndex);
+            return;
+        }
+        int[] source = array;
+        int sourceFrom = fromIndex;
+        int[] target = new int[length];
+        int targetFrom = 0;
+        int[] counts = new int[DIGIT_VALUES];
+        for (int shift = 0; shift < Integer.SIZE; shift += DIGIT_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = sourceFrom; i < sourceFrom + length; ++i) {
+                counts[digit(source[i], shift)]++;
+            }
+            if (counts[digit(source[sourceFrom], shift)] == length) {
+                continue;
+            }
+            int position = targetFrom;
+            for (int d = 0; d < DIGIT_VALUES; ++d) {
+                int count = counts[d];
+                counts[d] = position;
+                position += count;
+            }
+            for (int i = sourceFrom; i < sourceFrom + length; ++i) {
+                target[counts[digit(source[i], shift)]++] = source[i];
+            }
+            int[] swapArray = source;
+            source = target;
+            target = swapArray;
+            int swapFrom = sourceFrom;
+            sourceFrom = targetFrom;
+            targetFrom = swapFrom;
+        }
+        if (source != array) {
+            System.arraycopy(source, sourceFrom, array, fromIndex, length);
+        }
+    }
+
+    // Flipping the sign bit makes negative numbers come first in unsigned digit order
+    private static int digit(int value, int shift) {
+        return ((value ^ Integer.MIN_VALUE) >>> shift) & DIGIT_MASK;
+    }
+}
@@ -0,0 +1,16 @@
+package sorting;
+
+public class ReferenceSortingEngine implements SortingEngine {
+    @Override
+    public void sort(int[] array, int fromIndex, int toIndex) {
+        for (int i = fromIndex; i < toIndex; ++i) {
+            for (int j = i + 1; j < toIndex; ++j) {
+                if (array[i] > array[j]) {
+                    int tmp = array[i];
+                    array[i] = array[j];
+                    array[j] = tmp;
+                }
+            }
+        }
+    }
+}
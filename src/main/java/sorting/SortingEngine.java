@@ -0,0 +1,15 @@
+package sorting;
+
+import java.io.Closeable;
+
+public interface SortingEngine extends Closeable {
+    void sort(int[] array, int fromIndex, int toIndex);
+
+    default void sort(int[] array) {
+        sort(array, 0, array.length);
+    }
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,131 @@
+package stats;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of non-negative values, in the spirit of HdrHistogram: every power of two is split into
+// SUB_BUCKETS linear buckets, so any recorded value is reported with a relative error below 1 / SUB_BUCKETS.
+// Recording is lock-free; give each recording thread its own histogram and merge them with add() to read
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong(0);
+    private final AtomicLong totalValue = new AtomicLong(0);
+    private final AtomicLong maxValue = new AtomicLong(0);
+
+    public void record(long value) {
+        long recordedValue = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(recordedValue));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(recordedValue);
+        maxValue.accumulateAndGet(recordedValue, Math::max);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; ++i) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        totalValue.addAndGet(other.totalValue.get());
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+    }
+
+    // Non-empty buckets and totals, compact enough to pass histograms between processes
+    public byte[] toBytes() {
+        ByteBuffer bytes = ByteBuffer.allocate(3 * Long.BYTES + Integer.BYTES
+                + BUCKETS * (Integer.BYTES + Long.BYTES));
+        bytes.putLong(totalCount.get());
+        bytes.putLong(totalValue.get());
+        bytes.putLong(maxValue.get());
+        int sizePosition = bytes.position();
+        bytes.putInt(0);
+        int buckets = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            long count = counts.get(i);
+            if (count != 0) {
+                bytes.putInt(i);
+                bytes.putLong(count);
+                ++buckets;
+            }
+        }
+        bytes.putInt(sizePosition, buckets);
+        return Arrays.copyOf(bytes.array(), bytes.position());
+    }
+
+    public static LatencyHistogram fromBytes(byte[] encoded) {
+        ByteBuffer bytes = ByteBuffer.wrap(encoded);
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.totalCount.set(bytes.getLong());
+        histogram.totalValue.set(bytes.getLong());
+        histogram.maxValue.set(bytes.getLong());
+        int buckets = bytes.getInt();
+        for (int i = 0; i < buckets; ++i) {
+            histogram.counts.set(bytes.getInt(), bytes.getLong());
+        }
+        return histogram;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalValue.get() / count;
+    }
+
+    // The highest value that falls into the same bucket as the value at the percentile, never above the maximum
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    private static int bucketOf(long value) {
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (shift <= 0) {
+            return (int) value;
+        }
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = bucket - (long) shift * SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,58 @@
+package stats;
+
+// Mean, spread and 95% confidence interval of a few independent samples, such as per-iteration means.
+// The interval uses Student's t distribution, which matters for the handful of iterations a benchmark runs
+public class SampleSummary {
+    // Two-sided 95% critical values of Student's t for 1..30 degrees of freedom
+    private static final double[] T_95 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+    private static final double Z_95 = 1.960;
+
+    private final int count;
+    private final double mean;
+    private final double standardDeviation;
+
+    public SampleSummary(double[] samples) {
+        this.count = samples.length;
+        double sum = 0;
+        for (double sample : samples) {
+            sum += sample;
+        }
+        this.mean = count == 0 ? 0 : sum / count;
+        double squares = 0;
+        for (double sample : samples) {
+            squares += (sample - mean) * (sample - mean);
+        }
+        this.standardDeviation = count < 2 ? 0 : Math.sqrt(squares / (count - 1));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    // Standard deviation relative to the mean, 0 for a zero mean
+    public double getCoefficientOfVariation() {
+        return mean == 0 ? 0 : standardDeviation / Math.abs(mean);
+    }
+
+    // Half width of the 95% confidence interval of the mean, NaN for fewer than two samples
+    public double getConfidenceHalfWidth() {
+        if (count < 2) {
+            return Double.NaN;
+        }
+        int degreesOfFreedom = count - 1;
+        double t = degreesOfFreedom <= T_95.length ? T_95[degreesOfFreedom - 1] : Z_95;
+        return t * standardDeviation / Math.sqrt(count);
+    }
+}
@@ -0,0 +1,72 @@
+package sorting;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class DualPivotQuickSortingEngineTest {
+    private static final int[] LENGTHS = {0, 1, 2, 31, 32, 33, 100, 1000, 10_000};
+
+    @Test
+    public void sortsSorted() {
+        checkAgainstReference(i -> i);
+    }
+
+    @Test
+    public void sortsReversed() {
+        checkAgainstReference(i -> -i);
+    }
+
+    @Test
+    public void sortsAllEqual() {
+        checkAgainstReference(i -> 42);
+    }
+
+    @Test
+    public void sortsTwoValued() {
+        checkAgainstReference(i -> i % 2 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+        checkAgainstReference(i -> i % 3 == 0 ? 7 : 5);
+    }
+
+    @Test
+    public void sortsRandom() {
+        Random random = new Random(1);
+        checkAgainstReference(i -> random.nextInt());
+        checkAgainstReference(i -> random.nextInt(10));
+    }
+
+    @Test
+    public void sortsSubrange() {
+        int[] array = new Random(2).ints(1000, 0, 100).toArray();
+        int[] expected = array.clone();
+        new ReferenceSortingEngine().sort(expected, 100, 900);
+        new DualPivotQuickSortingEngine().sort(array, 100, 900);
+        assertArrayEquals(expected, array);
+    }
+
+    // Too long for the reference engine, used to overflow the stack
+    @Test
+    public void sortsLongTwoValued() {
+        int[] array = new int[1_000_000];
+        Arrays.setAll(array, i -> i % 2 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+        int[] expected = array.clone();
+        Arrays.sort(expected);
+        new DualPivotQuickSortingEngine().sort(array);
+        assertArrayEquals(expected, array);
+    }
+
+    private static void checkAgainstReference(IntUnaryOperator element) {
+        for (int length : LENGTHS) {
+            int[] array = new int[length];
+            Arrays.setAll(array, element::applyAsInt);
+            int[] expected = array.clone();
+            new ReferenceSortingEngine().sort(expected);
+            new DualPivotQuickSortingEngine().sort(array);
+            assertArrayEquals(expected, array, "length " + length);
+        }
+    }
+}